@@ -0,0 +1,80 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vaadin.sass.internal.ScssContext;
+import com.vaadin.sass.internal.ScssStylesheet;
+import com.vaadin.sass.internal.StylesheetCache;
+
+/**
+ * Measures the traversal phase of {@link ScssStylesheet#compile()}, i.e.
+ * evaluation of variables, mixins, functions, control directives and nesting,
+ * without the @extend processing. Imports are served from a
+ * {@link StylesheetCache} filled before the measurement, so imported style
+ * sheets are copied but not parsed.
+ * 
+ * @author Vaadin Ltd
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CompileBenchmark {
+
+    @Param({ "valo", "reindeer", "synthetic-100", "synthetic-500" })
+    public String input;
+
+    private ScssStylesheet parsed;
+    private StylesheetCache cache;
+    private ScssStylesheet stylesheet;
+
+    @Setup
+    public void setUp() throws Exception {
+        parsed = Inputs.parse(input);
+        cache = new StylesheetCache();
+        // fill the import cache
+        parsed.copy().traverse(Inputs.createContext(cache));
+    }
+
+    @Setup(Level.Invocation)
+    public void copyStylesheet() {
+        stylesheet = parsed.copy();
+    }
+
+    @Benchmark
+    public ScssStylesheet traverse() {
+        ScssContext context = Inputs.createContext(cache);
+        stylesheet.traverse(context);
+        return stylesheet;
+    }
+}
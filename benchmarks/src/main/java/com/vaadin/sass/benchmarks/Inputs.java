@@ -0,0 +1,167 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.vaadin.sass.internal.ScssContext;
+import com.vaadin.sass.internal.ScssStylesheet;
+import com.vaadin.sass.internal.StylesheetCache;
+
+/**
+ * Benchmark inputs: the Vaadin themes checked in as test resources of the
+ * compiler and synthetic style sheets generated by {@link SyntheticScss}.
+ * 
+ * Inputs are named "valo", "reindeer" or "synthetic-N" where N is the number
+ * of generated rules. The location of the themes can be set with the system
+ * property {@value #THEMES_PROPERTY}, by default they are looked up relative
+ * to the benchmarks directory.
+ * 
+ * @author Vaadin Ltd
+ */
+public class Inputs {
+
+    public static final String THEMES_PROPERTY = "sass.benchmarks.themes";
+
+    private static final String THEMES_PATH = "src/test/resources/vaadin-themes/scss";
+
+    private static final String SYNTHETIC_PREFIX = "synthetic-";
+
+    private Inputs() {
+    }
+
+    /**
+     * Returns the directory containing the Vaadin theme sources.
+     * 
+     * @return theme source directory
+     */
+    public static File getThemesDirectory() {
+        String path = System.getProperty(THEMES_PROPERTY);
+        if (path != null) {
+            return new File(path);
+        }
+        File dir = new File("../" + THEMES_PATH);
+        if (!dir.isDirectory()) {
+            // running from the root of the compiler project
+            dir = new File(THEMES_PATH);
+        }
+        if (!dir.isDirectory()) {
+            throw new IllegalStateException(
+                    "Vaadin theme sources not found, set the system property "
+                            + THEMES_PROPERTY);
+        }
+        return dir;
+    }
+
+    public static boolean isSynthetic(String input) {
+        return input.startsWith(SYNTHETIC_PREFIX);
+    }
+
+    /**
+     * Returns the number of rules of a synthetic input.
+     * 
+     * @param input
+     *            input name of the form "synthetic-N"
+     * @return number of generated rules
+     */
+    public static int getSyntheticSize(String input) {
+        return Integer.parseInt(input.substring(SYNTHETIC_PREFIX.length()));
+    }
+
+    /**
+     * Returns the sources of all the style sheets of an input by identifier.
+     * For a theme, these are the main style sheet and all the files it
+     * imports.
+     * 
+     * @param input
+     *            input name
+     * @return map from identifier to SCSS source
+     * @throws Exception
+     */
+    public static Map<String, String> getSources(String input)
+            throws Exception {
+        Map<String, String> sources = new LinkedHashMap<String, String>();
+        if (isSynthetic(input)) {
+            sources.put(input + ".scss",
+                    SyntheticScss.generate(getSyntheticSize(input)));
+        } else {
+            ScssStylesheet stylesheet = parse(input);
+            stylesheet.compile();
+            for (String uri : stylesheet.getSourceUris()) {
+                sources.put(uri, read(new File(uri)));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Parses the main style sheet of an input. Imports are not parsed; they
+     * are resolved during compilation.
+     * 
+     * @param input
+     *            input name
+     * @return parsed, uncompiled style sheet
+     * @throws Exception
+     */
+    public static ScssStylesheet parse(String input) throws Exception {
+        if (isSynthetic(input)) {
+            return ScssStylesheet.getFromString(input + ".scss",
+                    SyntheticScss.generate(getSyntheticSize(input)));
+        }
+        File file = new File(new File(getThemesDirectory(), input),
+                "styles.scss");
+        ScssStylesheet stylesheet = ScssStylesheet.get(file.getPath());
+        if (stylesheet == null) {
+            throw new IllegalStateException(file + " not found");
+        }
+        return stylesheet;
+    }
+
+    /**
+     * Creates a compilation context that resolves imports from the given
+     * cache, so that imported files are only parsed once per benchmark run.
+     * 
+     * @param cache
+     *            cache for imported style sheets
+     * @return new compilation context
+     */
+    public static ScssContext createContext(StylesheetCache cache) {
+        ScssContext context = new ScssContext(ScssContext.UrlMode.MIXED);
+        context.setStylesheetCache(cache);
+        return context;
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.benchmarks;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vaadin.sass.internal.ScssStylesheet;
+
+/**
+ * Measures serialization of a compiled style sheet: {@link
+ * ScssStylesheet#printState()}, {@link ScssStylesheet#write(java.io.Writer)}
+ * and minification with {@link ScssStylesheet#write(java.io.Writer, boolean)}
+ * .
+ * 
+ * @author Vaadin Ltd
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OutputBenchmark {
+
+    @Param({ "valo", "reindeer", "synthetic-100", "synthetic-500" })
+    public String input;
+
+    private ScssStylesheet stylesheet;
+
+    @Setup
+    public void setUp() throws Exception {
+        stylesheet = Inputs.parse(input);
+        stylesheet.compile();
+    }
+
+    @Benchmark
+    public String printState() {
+        return stylesheet.printState();
+    }
+
+    @Benchmark
+    public StringWriter write() throws Exception {
+        StringWriter writer = new StringWriter();
+        stylesheet.write(writer);
+        return writer;
+    }
+
+    @Benchmark
+    public StringWriter minify() throws Exception {
+        StringWriter writer = new StringWriter();
+        stylesheet.write(writer, true);
+        return writer;
+    }
+}
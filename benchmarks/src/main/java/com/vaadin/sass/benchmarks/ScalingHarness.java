@@ -0,0 +1,275 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.vaadin.sass.internal.ScssStylesheet;
+
+/**
+ * Compiles synthetic style sheets of increasing size along one dimension at a
+ * time and reports the time and peak heap usage for each size. The estimated
+ * exponent (log of the time ratio divided by log of the size ratio) is close
+ * to 1 for linear behavior; clearly larger values point to super-linear
+ * algorithms, e.g. in @extend processing or node tree manipulation.
+ * 
+ * Usage: {@code ScalingHarness [-steps:N] [-repeat:N] [dimension...]} where
+ * the dimensions are rules, depth, extends, includes, loop and width. By
+ * default all dimensions are measured.
+ * 
+ * @author Vaadin Ltd
+ */
+public class ScalingHarness {
+
+    public enum Dimension {
+        RULES("rules", 100), DEPTH("depth", 2), EXTENDS("extends", 100), INCLUDES(
+                "includes", 10), LOOP("loop", 100), WIDTH("width", 2);
+
+        private final String name;
+        private final int initialSize;
+
+        private Dimension(String name, int initialSize) {
+            this.name = name;
+            this.initialSize = initialSize;
+        }
+
+        public int getInitialSize() {
+            return initialSize;
+        }
+
+        /**
+         * Creates a generator scaled to the given size in this dimension,
+         * with fixed, small values in the other dimensions.
+         * 
+         * @param size
+         *            size in this dimension
+         * @return configured generator
+         */
+        public SyntheticScss createGenerator(int size) {
+            SyntheticScss generator = new SyntheticScss().rules(100).depth(2)
+                    .extendCount(10).mixins(10).includes(1).loopLength(3)
+                    .selectorWidth(2);
+            switch (this) {
+            case RULES:
+                return generator.rules(size).extendCount(size / 10);
+            case DEPTH:
+                // nested selector lists multiply, keep output linear
+                return generator.depth(size).selectorWidth(1);
+            case EXTENDS:
+                return generator.extendCount(size);
+            case INCLUDES:
+                return generator.includes(size);
+            case LOOP:
+                return generator.rules(10).loopLength(size);
+            case WIDTH:
+                return generator.selectorWidth(size).depth(1);
+            default:
+                throw new IllegalArgumentException(name);
+            }
+        }
+
+        public static Dimension get(String name) {
+            for (Dimension dimension : values()) {
+                if (dimension.name.equals(name)) {
+                    return dimension;
+                }
+            }
+            throw new IllegalArgumentException("Unknown dimension " + name
+                    + ", use one of " + Arrays.toString(values()));
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Measurements for one input size.
+     */
+    public static class Result {
+        private final int size;
+        private final long parseNanos;
+        private final long compileNanos;
+        private final long printNanos;
+        private final long peakHeap;
+        private final int outputLength;
+
+        public Result(int size, long parseNanos, long compileNanos,
+                long printNanos, long peakHeap, int outputLength) {
+            this.size = size;
+            this.parseNanos = parseNanos;
+            this.compileNanos = compileNanos;
+            this.printNanos = printNanos;
+            this.peakHeap = peakHeap;
+            this.outputLength = outputLength;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getCompileNanos() {
+            return compileNanos;
+        }
+
+        public long getPeakHeap() {
+            return peakHeap;
+        }
+    }
+
+    private int steps = 5;
+    private int repeat = 3;
+
+    public void setSteps(int steps) {
+        this.steps = steps;
+    }
+
+    public void setRepeat(int repeat) {
+        this.repeat = repeat;
+    }
+
+    /**
+     * Measures a dimension at sizes doubling from its initial size.
+     * 
+     * @param dimension
+     *            dimension to scale
+     * @return results by increasing size
+     * @throws Exception
+     */
+    public List<Result> run(Dimension dimension) throws Exception {
+        List<Result> results = new ArrayList<Result>();
+        // warm up
+        measure(dimension, dimension.getInitialSize());
+        int size = dimension.getInitialSize();
+        for (int step = 0; step < steps; step++) {
+            Result best = null;
+            for (int i = 0; i < repeat; i++) {
+                Result result = measure(dimension, size);
+                if (best == null || result.compileNanos < best.compileNanos) {
+                    best = result;
+                }
+            }
+            results.add(best);
+            size *= 2;
+        }
+        return results;
+    }
+
+    private Result measure(Dimension dimension, int size) throws Exception {
+        String scss = dimension.createGenerator(size).generate();
+        System.gc();
+        resetPeakHeap();
+        long start = System.nanoTime();
+        ScssStylesheet stylesheet = ScssStylesheet.getFromString("synthetic-"
+                + dimension + "-" + size + ".scss", scss);
+        long parsed = System.nanoTime();
+        stylesheet.compile();
+        long compiled = System.nanoTime();
+        String css = stylesheet.printState();
+        long printed = System.nanoTime();
+        return new Result(size, parsed - start, compiled - parsed, printed
+                - compiled, getPeakHeap(), css.length());
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // sum of the pool peaks, an upper bound of the peak heap usage
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Prints results as a table.
+     * 
+     * @param dimension
+     *            measured dimension
+     * @param results
+     *            results by increasing size
+     */
+    public static void print(Dimension dimension, List<Result> results) {
+        System.out.println("Dimension: " + dimension);
+        System.out.println(String.format("%8s %10s %12s %10s %9s %10s %10s",
+                "Size", "Parse (ms)", "Compile (ms)", "Print (ms)",
+                "Exponent", "Peak (MB)", "Output"));
+        Result previous = null;
+        for (Result result : results) {
+            String exponent = "";
+            if (previous != null && previous.compileNanos > 0) {
+                exponent = String.format("%.2f", getExponent(previous, result));
+            }
+            System.out.println(String.format(
+                    "%8d %10.1f %12.1f %10.1f %9s %10.1f %10d", result.size,
+                    result.parseNanos / 1e6, result.compileNanos / 1e6,
+                    result.printNanos / 1e6, exponent,
+                    result.peakHeap / (1024.0 * 1024.0), result.outputLength));
+            previous = result;
+        }
+        System.out.println();
+    }
+
+    /**
+     * Estimates the exponent k of the compile time t(n) ~ n^k from two
+     * measurements.
+     * 
+     * @param smaller
+     *            result for the smaller size
+     * @param larger
+     *            result for the larger size
+     * @return estimated exponent
+     */
+    public static double getExponent(Result smaller, Result larger) {
+        return Math.log((double) larger.compileNanos / smaller.compileNanos)
+                / Math.log((double) larger.size / smaller.size);
+    }
+
+    public static void main(String[] args) throws Exception {
+        ScalingHarness harness = new ScalingHarness();
+        List<Dimension> dimensions = new ArrayList<Dimension>();
+        for (String arg : args) {
+            if (arg.startsWith("-steps:")) {
+                harness.setSteps(Integer.parseInt(arg.substring(7)));
+            } else if (arg.startsWith("-repeat:")) {
+                harness.setRepeat(Integer.parseInt(arg.substring(8)));
+            } else {
+                dimensions.add(Dimension.get(arg));
+            }
+        }
+        if (dimensions.isEmpty()) {
+            dimensions.addAll(Arrays.asList(Dimension.values()));
+        }
+        for (Dimension dimension : dimensions) {
+            print(dimension, harness.run(dimension));
+        }
+    }
+}
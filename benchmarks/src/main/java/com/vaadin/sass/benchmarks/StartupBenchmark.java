@@ -0,0 +1,103 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vaadin.sass.internal.ScssStylesheet;
+
+/**
+ * Measures the time to the first compiled CSS in a new JVM, i.e. parsing,
+ * compiling and printing a style sheet file including loading and
+ * initializing the compiler classes. Each measurement runs in a fork of its
+ * own, and the setup does not use any compiler classes.
+ * 
+ * The logging parameter selects whether the compiler replaces the logging
+ * configuration (see
+ * {@link ScssStylesheet#KEEP_LOGGING_CONFIGURATION_PROPERTY}).
+ * 
+ * @author Vaadin Ltd
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    @Param({ "synthetic-10", "valo" })
+    public String input;
+
+    @Param({ "configure", "keep" })
+    public String logging;
+
+    private File file;
+
+    private File tempFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        if ("keep".equals(logging)) {
+            // same as ScssStylesheet.KEEP_LOGGING_CONFIGURATION_PROPERTY
+            System.setProperty("vaadin.sass.logging.keep", "true");
+        }
+        if (Inputs.isSynthetic(input)) {
+            tempFile = File.createTempFile("startup", ".scss");
+            OutputStream out = new FileOutputStream(tempFile);
+            try {
+                out.write(SyntheticScss.generate(
+                        Inputs.getSyntheticSize(input)).getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+            file = tempFile;
+        } else {
+            file = new File(new File(Inputs.getThemesDirectory(), input),
+                    "styles.scss");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (tempFile != null) {
+            tempFile.delete();
+        }
+    }
+
+    @Benchmark
+    public String firstCompile() throws Exception {
+        ScssStylesheet stylesheet = ScssStylesheet.get(file.getPath());
+        stylesheet.compile();
+        return stylesheet.printState();
+    }
+}
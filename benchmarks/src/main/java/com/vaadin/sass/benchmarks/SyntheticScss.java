@@ -0,0 +1,228 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.benchmarks;
+
+/**
+ * Generates synthetic SCSS input of configurable size and shape. The
+ * generated style sheet uses variables, mixins, functions, nesting, parent
+ * selectors, @extend, @for, @each and @media. Each dimension can be scaled
+ * separately:
+ * <ul>
+ * <li>rules: number of top level rules</li>
+ * <li>depth: nesting depth of the rules</li>
+ * <li>extends: total number of @extend directives</li>
+ * <li>mixins and includes: number of mixins and how many times each one is
+ * included</li>
+ * <li>loop length: iterations of the @for loop and length of the @each list
+ * </li>
+ * <li>selector width: number of selectors in the selector list of each rule
+ * </li>
+ * </ul>
+ * 
+ * For example: {@code new SyntheticScss().rules(1000).depth(3).generate()}
+ * 
+ * @author Vaadin Ltd
+ */
+public class SyntheticScss {
+
+    private static final int EXTEND_TARGETS = 10;
+
+    private static final int MEDIA_INTERVAL = 50;
+
+    private int rules = 100;
+    private int depth = 2;
+    private int extendCount = 100;
+    private int mixins = 1;
+    private int includes = 100;
+    private int loopLength = 3;
+    private int selectorWidth = 2;
+
+    /**
+     * Generates a style sheet with the given number of top level rules and
+     * default values for the other dimensions.
+     * 
+     * @param rules
+     *            number of top level rules
+     * @return SCSS source
+     */
+    public static String generate(int rules) {
+        return new SyntheticScss().rules(rules).extendCount(rules)
+                .includes(rules).generate();
+    }
+
+    public SyntheticScss rules(int rules) {
+        this.rules = Math.max(1, rules);
+        return this;
+    }
+
+    public SyntheticScss depth(int depth) {
+        this.depth = Math.max(1, depth);
+        return this;
+    }
+
+    public SyntheticScss extendCount(int extendCount) {
+        this.extendCount = extendCount;
+        return this;
+    }
+
+    public SyntheticScss mixins(int mixins) {
+        this.mixins = Math.max(1, mixins);
+        return this;
+    }
+
+    /**
+     * Sets how many times each mixin is included.
+     * 
+     * @param includes
+     *            number of includes per mixin
+     * @return this generator
+     */
+    public SyntheticScss includes(int includes) {
+        this.includes = includes;
+        return this;
+    }
+
+    public SyntheticScss loopLength(int loopLength) {
+        this.loopLength = loopLength;
+        return this;
+    }
+
+    public SyntheticScss selectorWidth(int selectorWidth) {
+        this.selectorWidth = Math.max(1, selectorWidth);
+        return this;
+    }
+
+    /**
+     * Generates the style sheet.
+     * 
+     * @return SCSS source
+     */
+    public String generate() {
+        StringBuilder scss = new StringBuilder();
+        scss.append("$base-color: #336699;\n");
+        scss.append("$padding: 4px;\n");
+        scss.append("@function half($value) {\n");
+        scss.append("  @return $value / 2;\n");
+        scss.append("}\n");
+        for (int m = 0; m < mixins; m++) {
+            scss.append("@mixin mixin-").append(m)
+                    .append("($size, $color: $base-color) {\n");
+            scss.append("  width: $size;\n");
+            scss.append("  border: 1px solid darken($color, ")
+                    .append(m % 30).append("%);\n");
+            scss.append("  .mixin-").append(m).append("-inner {\n");
+            scss.append("    height: half($size);\n");
+            scss.append("  }\n");
+            scss.append("}\n");
+        }
+        for (int i = 0; i < EXTEND_TARGETS; i++) {
+            scss.append(".target-").append(i).append(" {\n");
+            scss.append("  color: $base-color;\n");
+            scss.append("}\n");
+        }
+        int totalIncludes = mixins * includes;
+        int extendIndex = 0;
+        int includeIndex = 0;
+        for (int i = 0; i < rules; i++) {
+            boolean media = i % MEDIA_INTERVAL == MEDIA_INTERVAL - 1;
+            if (media) {
+                scss.append("@media screen and (min-width: ").append(i)
+                        .append("px) {\n");
+            }
+            appendSelectorList(scss, "rule-" + i);
+            scss.append(" {\n");
+            int ruleExtends = share(extendCount, i);
+            for (int e = 0; e < ruleExtends; e++) {
+                scss.append("  @extend .target-")
+                        .append(extendIndex++ % EXTEND_TARGETS)
+                        .append(";\n");
+            }
+            int ruleIncludes = share(totalIncludes, i);
+            for (int k = 0; k < ruleIncludes; k++) {
+                scss.append("  @include mixin-")
+                        .append(includeIndex++ % mixins).append("(")
+                        .append(k % 50 + 1).append("px);\n");
+            }
+            scss.append("  padding: $padding half(").append(i % 20 + 2)
+                    .append("px);\n");
+            appendNested(scss, i, 1);
+            scss.append("}\n");
+            if (media) {
+                scss.append("}\n");
+            }
+        }
+        if (loopLength > 0) {
+            scss.append("@for $i from 1 through ").append(loopLength)
+                    .append(" {\n");
+            scss.append("  .loop-#{$i} {\n");
+            scss.append("    width: $i * 10px;\n");
+            scss.append("  }\n");
+            scss.append("}\n");
+            scss.append("@each $name in ");
+            for (int i = 0; i < loopLength; i++) {
+                if (i > 0) {
+                    scss.append(", ");
+                }
+                scss.append("item").append(i);
+            }
+            scss.append(" {\n");
+            scss.append("  .icon-#{$name} {\n");
+            scss.append("    background: url(#{$name}.png);\n");
+            scss.append("  }\n");
+            scss.append("}\n");
+        }
+        return scss.toString();
+    }
+
+    private void appendNested(StringBuilder scss, int rule, int level) {
+        if (level >= depth) {
+            return;
+        }
+        indent(scss, level);
+        appendSelectorList(scss, "element-" + rule + "-" + level);
+        scss.append(" {\n");
+        indent(scss, level + 1);
+        scss.append("margin: ").append(level).append("px;\n");
+        indent(scss, level + 1);
+        scss.append("&:hover {\n");
+        indent(scss, level + 2);
+        scss.append("color: lighten($base-color, ").append(rule % 30)
+                .append("%);\n");
+        indent(scss, level + 1);
+        scss.append("}\n");
+        appendNested(scss, rule, level + 1);
+        indent(scss, level);
+        scss.append("}\n");
+    }
+
+    private void appendSelectorList(StringBuilder scss, String name) {
+        scss.append(".").append(name);
+        for (int w = 1; w < selectorWidth; w++) {
+            scss.append(", .").append(name).append("-alt").append(w);
+        }
+    }
+
+    // number of items out of total to assign to rule i
+    private int share(int total, int i) {
+        return total / rules + (i < total % rules ? 1 : 0);
+    }
+
+    private static void indent(StringBuilder scss, int level) {
+        for (int i = 0; i < level; i++) {
+            scss.append("  ");
+        }
+    }
+}
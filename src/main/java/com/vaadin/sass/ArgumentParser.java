@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -35,10 +36,12 @@ public final class ArgumentParser {
     public static class Option {
         private List<String> names;
         private List<String> validValues;
+        private String anyValueExample;
         private String defaultValue;
         private String value;
         private String help;
         private boolean set;
+        private boolean replacesInput;
 
         protected Option(String... names) {
             assert names.length > 0 : "At least one option name must be specified";
@@ -61,6 +64,19 @@ public final class ArgumentParser {
             return this;
         }
 
+        /**
+         * Specify that this Option accepts any value, e.g. a file name.
+         * 
+         * @param example
+         *            an example value to show in the help text
+         * @return a reference to self
+         */
+        public Option anyValue(String example) {
+            validValues = Collections.emptyList();
+            anyValueExample = example;
+            return this;
+        }
+
         /**
          * Specify a default value for this Option. If this option is not
          * specified on the command line,
@@ -99,6 +115,18 @@ public final class ArgumentParser {
             return this;
         }
 
+        /**
+         * Specify that no input file is required when this Option is given,
+         * e.g. for an option that starts a server instead of compiling a
+         * file.
+         * 
+         * @return a reference to self
+         */
+        public Option replacesInput() {
+            replacesInput = true;
+            return this;
+        }
+
         protected boolean supportsValues() {
             return validValues != null;
         }
@@ -111,7 +139,7 @@ public final class ArgumentParser {
 
             assert validValues != null : "Valid values must be specified before setting a value";
 
-            if (!validValues.contains(value)) {
+            if (anyValueExample == null && !validValues.contains(value)) {
                 return false;
             }
 
@@ -142,6 +170,10 @@ public final class ArgumentParser {
             return null;
         }
 
+        protected String getAnyValueExample() {
+            return anyValueExample;
+        }
+
         protected String getDefaultValue() {
             return defaultValue;
         }
@@ -259,8 +291,12 @@ public final class ArgumentParser {
             }
         }
 
-        // Require input file
-        if (inFile == null) {
+        // Require input file unless an option replacing it was given
+        boolean inputReplaced = false;
+        for (Option o : validOptions) {
+            inputReplaced |= o.isSet() && o.replacesInput;
+        }
+        if (inFile == null && !inputReplaced) {
             printHelp();
             System.exit(1);
         }
@@ -279,10 +315,11 @@ public final class ArgumentParser {
         Option o;
 
         // Extract option name and value (if applicable)
-        if (opt.indexOf(':') != -1) {
-            String[] parts = opt.split(":");
-            optName = parts[0];
-            optValue = parts[1];
+        int colon = opt.indexOf(':');
+        if (colon != -1) {
+            // the value may contain colons, e.g. a Windows path
+            optName = opt.substring(0, colon);
+            optValue = opt.substring(colon + 1);
         } else {
             optName = opt;
         }
@@ -416,7 +453,10 @@ public final class ArgumentParser {
             }
 
             // Print a list of all valid values if applicable
-            if (o.getValidValues() != null) {
+            if (o.getAnyValueExample() != null) {
+                System.out.println(OPTION_HELP_INDENT + "Example: -"
+                        + names.get(0) + ":" + o.getAnyValueExample());
+            } else if (o.getValidValues() != null) {
                 List<String> values = o.getValidValues();
                 String valuesString = "Valid values: ";
                 for (int i = 0; i < values.size(); ++i) {
@@ -494,4 +534,22 @@ public final class ArgumentParser {
         return value;
     }
 
+    /**
+     * Get the values of all the options that the user has specified on the
+     * command line or that have a default value, keyed by the primary name of
+     * the option. Options specified without a value map to an empty string.
+     * 
+     * @return option values
+     */
+    public Map<String, String> getOptionValues() {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for (Option o : validOptions) {
+            if (o != helpOption && (o.isSet() || o.getValue() != null)) {
+                values.put(o.getNames().get(0),
+                        o.getValue() != null ? o.getValue() : "");
+            }
+        }
+        return values;
+    }
+
 }
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import com.vaadin.sass.internal.ScssStylesheet;
+import com.vaadin.sass.internal.StylesheetCache;
+
+/**
+ * Long-running compiler process that compiles files on request of clients
+ * connecting to a local TCP port, so that each compilation does not pay for
+ * starting a JVM, loading the parser and warming up the JIT. Parsed imports
+ * are cached between compilations and reparsed when their files change.
+ * 
+ * A request consists of the working directory of the client, the input and
+ * output files and the command line options of {@link SassCompiler}; the
+ * response contains the exit status, the CSS if no output file was given and
+ * the diagnostics (warnings, errors and profiling results). Requests are
+ * compiled in parallel.
+ * 
+ * The daemon only accepts connections from the loopback interface. As it
+ * reads and writes files with its own permissions, each request must also
+ * contain a random token that the daemon writes to a file readable only by
+ * its owner, see {@link #getTokenFile(int)}. Requests with a wrong token or
+ * exceeding the size limits are rejected.
+ * 
+ * @author Vaadin Ltd
+ */
+public class CompilerDaemon {
+
+    public static final int DEFAULT_PORT = 9176;
+
+    /**
+     * System property for the directory of the token files, by default
+     * .vaadin-sass in the home directory of the user.
+     */
+    public static final String TOKEN_DIRECTORY_PROPERTY = "vaadin.sass.daemon.dir";
+
+    private static final int PROTOCOL_VERSION = 2;
+
+    private static final int TOKEN_BYTES = 32;
+
+    // limits of a request: paths, option names and values and their number
+    private static final int MAX_STRING_BYTES = 16 * 1024;
+    private static final int MAX_OPTIONS = 64;
+
+    private final int port;
+
+    private final StylesheetCache cache = new StylesheetCache();
+
+    // stream for the diagnostics of the request compiled by each thread
+    private final ThreadLocal<PrintStream> diagnostics = new ThreadLocal<PrintStream>();
+
+    // strong reference so that the handler is not lost with the logger
+    private final Logger logger = Logger.getLogger("com.vaadin.sass");
+
+    private final Handler diagnosticsHandler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            PrintStream err = diagnostics.get();
+            if (err != null && isLoggable(record)) {
+                err.print(getFormatter().format(record));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private ServerSocket serverSocket;
+
+    private ExecutorService executor;
+
+    private Thread acceptThread;
+
+    private String token;
+
+    private File tokenFile;
+
+    /**
+     * Creates a daemon for a local port.
+     * 
+     * @param port
+     *            the port to listen on, 0 for any free port
+     */
+    public CompilerDaemon(int port) {
+        this.port = port;
+        diagnosticsHandler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                StringBuilder message = new StringBuilder();
+                message.append(record.getLevel()).append(": ")
+                        .append(formatMessage(record)).append('\n');
+                if (record.getThrown() != null
+                        && record.getThrown().getMessage() == null) {
+                    message.append(record.getThrown()).append('\n');
+                }
+                return message.toString();
+            }
+        });
+    }
+
+    /**
+     * Starts listening to the port and compiling requests in background
+     * threads. The parser and compiler are warmed up before accepting
+     * connections.
+     * 
+     * @throws IOException
+     *             if the port cannot be listened to
+     */
+    public synchronized void start() throws IOException {
+        // loads the compiler classes and configures logging before the
+        // diagnostics handler is added
+        ScssStylesheet warmUp = ScssStylesheet.getFromString("warm-up.scss",
+                "$c: red; @mixin m($w) { width: $w * 2; } .a { color: $c; "
+                        + "@include m(1px); } .b { @extend .a; }");
+        try {
+            warmUp.compile();
+        } catch (Exception e) {
+            throw new IOException("Compiler warm-up failed: " + e);
+        }
+        logger.addHandler(diagnosticsHandler);
+
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        try {
+            token = createToken();
+            tokenFile = getTokenFile(getPort());
+            writeTokenFile(tokenFile, token);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+                .availableProcessors());
+        acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, CompilerDaemon.class.getSimpleName());
+        acceptThread.start();
+    }
+
+    /**
+     * Returns the port the daemon is listening on.
+     * 
+     * @return port number
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Waits until the daemon has been stopped.
+     * 
+     * @throws InterruptedException
+     */
+    public void join() throws InterruptedException {
+        acceptThread.join();
+    }
+
+    /**
+     * Stops accepting connections. Compilations in progress are finished.
+     * 
+     * @throws IOException
+     */
+    public synchronized void stop() throws IOException {
+        serverSocket.close();
+        executor.shutdown();
+        logger.removeHandler(diagnosticsHandler);
+        tokenFile.delete();
+    }
+
+    /**
+     * Returns the file containing the token that clients must send to the
+     * daemon listening on a port.
+     * 
+     * @param port
+     *            the port of the daemon
+     * @return token file
+     */
+    public static File getTokenFile(int port) {
+        String directory = System.getProperty(TOKEN_DIRECTORY_PROPERTY);
+        File dir = directory != null ? new File(directory) : new File(
+                System.getProperty("user.home"), ".vaadin-sass");
+        return new File(dir, "daemon-" + port + ".token");
+    }
+
+    private static String createToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b & 0xff));
+        }
+        return token.toString();
+    }
+
+    private static void writeTokenFile(File file, String token)
+            throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory()) {
+            if (!dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            setOwnerOnly(dir);
+        }
+        // restrict the permissions before writing the token
+        file.delete();
+        if (!file.createNewFile() || !setOwnerOnly(file)) {
+            throw new IOException("Could not create " + file
+                    + " readable only by its owner");
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                "UTF-8");
+        try {
+            writer.write(token);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static boolean setOwnerOnly(File file) {
+        boolean directory = file.isDirectory();
+        return file.setReadable(false, false) && file.setReadable(true, true)
+                && file.setWritable(false, false)
+                && file.setWritable(true, true)
+                && file.setExecutable(false, false)
+                && (!directory || file.setExecutable(true, true));
+    }
+
+    private static String readTokenFile(int port) throws IOException {
+        File file = getTokenFile(port);
+        byte[] bytes = new byte[TOKEN_BYTES * 2];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return new String(bytes, "UTF-8");
+    }
+
+    private void acceptConnections() {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    Logger.getLogger(CompilerDaemon.class.getName()).severe(
+                            "Accepting connections failed: " + e);
+                }
+                return;
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(socket);
+                    } catch (IOException e) {
+                        // the client went away, nothing to report to
+                    } finally {
+                        try {
+                            socket.close();
+                        } catch (IOException e) {
+                            // ignore
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                socket.getInputStream()));
+        ByteArrayOutputStream css = new ByteArrayOutputStream();
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(css, true, "UTF-8");
+        PrintStream err = new PrintStream(messages, true, "UTF-8");
+
+        int status;
+        try {
+            int version = in.readInt();
+            if (version != PROTOCOL_VERSION) {
+                throw new InvalidRequestException(
+                        "Unsupported protocol version " + version
+                                + ", the daemon uses version "
+                                + PROTOCOL_VERSION);
+            }
+            String requestToken = readString(in);
+            if (requestToken == null
+                    || !MessageDigest.isEqual(token.getBytes("UTF-8"),
+                            requestToken.getBytes("UTF-8"))) {
+                throw new InvalidRequestException("Invalid daemon token");
+            }
+            File directory = new File(readRequiredString(in, "directory"));
+            String input = readRequiredString(in, "input file");
+            String output = readString(in);
+            int optionCount = in.readInt();
+            if (optionCount < 0 || optionCount > MAX_OPTIONS) {
+                throw new InvalidRequestException("Too many options: "
+                        + optionCount);
+            }
+            Map<String, String> options = new LinkedHashMap<String, String>();
+            for (int i = 0; i < optionCount; i++) {
+                options.put(readRequiredString(in, "option name"),
+                        readRequiredString(in, "option value"));
+            }
+            status = compile(directory, input, output, options, out, err);
+        } catch (InvalidRequestException e) {
+            err.println(e.getMessage());
+            status = SassCompiler.ERROR_COMPILE_FAILED;
+        }
+
+        DataOutputStream response = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+        response.writeInt(status);
+        writeBytes(response, css.toByteArray());
+        writeBytes(response, messages.toByteArray());
+        response.flush();
+    }
+
+    private int compile(File directory, String input, String output,
+            Map<String, String> options, PrintStream out, PrintStream err) {
+        diagnostics.set(err);
+        try {
+            cache.removeModified();
+            return SassCompiler.compile(directory, input, output, options,
+                    cache, out, err);
+        } catch (Exception e) {
+            e.printStackTrace(err);
+            return SassCompiler.ERROR_COMPILE_FAILED;
+        } finally {
+            diagnostics.remove();
+        }
+    }
+
+    /**
+     * Compiles a file in the daemon listening on a local port.
+     * 
+     * @param port
+     *            the port of the daemon
+     * @param directory
+     *            the directory against which relative paths are resolved
+     * @param input
+     *            the .scss file to compile
+     * @param output
+     *            the file to write the CSS to or null for out
+     * @param options
+     *            values of the command line options of {@link SassCompiler}
+     * @param out
+     *            stream for the CSS if no output file is given
+     * @param err
+     *            stream for the diagnostics
+     * @return exit status, 0 if the compilation succeeded
+     * @throws IOException
+     *             if no daemon is listening on the port, its token file
+     *             cannot be read or the connection fails
+     */
+    public static int compile(int port, File directory, String input,
+            String output, Map<String, String> options, OutputStream out,
+            OutputStream err) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            String token = readTokenFile(port);
+            DataOutputStream request = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            request.writeInt(PROTOCOL_VERSION);
+            writeString(request, token);
+            writeString(request, directory.getAbsolutePath());
+            writeString(request, input);
+            writeString(request, output);
+            request.writeInt(options.size());
+            for (Map.Entry<String, String> option : options.entrySet()) {
+                writeString(request, option.getKey());
+                writeString(request, option.getValue());
+            }
+            request.flush();
+
+            DataInputStream response = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            int status = response.readInt();
+            // read the whole response first so that nothing is written if the
+            // connection fails
+            byte[] css = readBytes(response, Integer.MAX_VALUE);
+            byte[] messages = readBytes(response, Integer.MAX_VALUE);
+            out.write(css);
+            out.flush();
+            err.write(messages);
+            err.flush();
+            return status;
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+            throws IOException {
+        writeBytes(out, value != null ? value.getBytes("UTF-8") : null);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in, MAX_STRING_BYTES);
+        return bytes != null ? new String(bytes, "UTF-8") : null;
+    }
+
+    private static String readRequiredString(DataInputStream in, String field)
+            throws IOException {
+        String value = readString(in);
+        if (value == null) {
+            throw new InvalidRequestException("Missing " + field);
+        }
+        return value;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes)
+            throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in, int maxLength)
+            throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        } else if (length > maxLength) {
+            throw new InvalidRequestException("Request too large: " + length
+                    + " bytes, at most " + maxLength + " allowed");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Thrown when a request is rejected, e.g. because of a wrong token.
+     */
+    private static class InvalidRequestException extends IOException {
+        private InvalidRequestException(String message) {
+            super(message);
+        }
+    }
+}
@@ -17,24 +17,33 @@
 package com.vaadin.sass;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.Writer;
-import java.util.zip.GZIPOutputStream;
+import java.net.ConnectException;
+import java.util.Map;
 
+import com.vaadin.sass.internal.BundleSplitter;
+import com.vaadin.sass.internal.CompilationProfiler;
+import com.vaadin.sass.internal.DefinitionProfiler;
+import com.vaadin.sass.internal.OutputPipeline;
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.ScssStylesheet;
+import com.vaadin.sass.internal.StylesheetCache;
 import com.vaadin.sass.internal.handler.SCSSDocumentHandlerImpl;
 import com.vaadin.sass.internal.handler.SCSSErrorHandler;
+import com.vaadin.sass.internal.selector.Selector;
+import com.vaadin.sass.internal.selector.SelectorWhitelist;
 
 public class SassCompiler {
 
-    private static final int ERROR_COMPILE_FAILED = 1;
+    static final int ERROR_COMPILE_FAILED = 1;
     private static final int ERROR_FILE_NOT_FOUND = 2;
+    // as for invalid options in ArgumentParser
+    private static final int ERROR_INVALID_ARGUMENT = 1;
+
+    private static final int MAX_PROFILED_DEFINITIONS = 20;
 
     public static void main(String[] args) throws Exception {
 
@@ -50,94 +59,316 @@ public class SassCompiler {
         argp.defineOption("urlMode").values("mixed", "absolute", "relative")
                 .defaultValue("mixed").help("Set URL handling mode");
 
-        argp.defineOption("minify").values("true", "false")
+        argp.defineOption("minify").values("true", "false", "both")
                 .defaultValue("false")
-                .help("Minify the compiled CSS with YUI Compressor");
+                .help("Minify the compiled CSS with YUI Compressor (both: write also\n"
+                        + "a minified .min.css next to the output file)");
 
         argp.defineOption("compress").values("true", "false")
                 .defaultValue("false")
                 .help("Create also a compressed version of the compiled CSS (only when output file is given)");
 
+        argp.defineOption("compression-level")
+                .values("1", "2", "3", "4", "5", "6", "7", "8", "9")
+                .defaultValue("6")
+                .help("Compression level for -compress, from 1 (fastest) to 9 (smallest)");
+
+        argp.defineOption("buffer-size")
+                .anyValue("65536")
+                .help("Size in bytes of the output buffers used for -compress");
+
+        argp.defineOption("merge-media").values("true", "false")
+                .defaultValue("false")
+                .help("Merge @media blocks with identical media queries (-profile\nshows the bytes saved)");
+
+        argp.defineOption("merge-rules").values("true", "false")
+                .defaultValue("false")
+                .help("Remove overridden declarations and merge identical adjacent\nrules (-profile shows the bytes saved)");
+
+        argp.defineOption("purge")
+                .anyValue("src/main/webapp")
+                .help("Remove the selectors that cannot match the application: the\n"
+                        + "value is a directory of HTML, Java and JavaScript files to\n"
+                        + "scan for used class names and ids, or a file listing the used\n"
+                        + ".classes, #ids and elements one per line (-profile shows\n"
+                        + "the bytes saved)");
+
+        argp.defineOption("split").values("none", "import", "media", "critical")
+                .defaultValue("none")
+                .help("Split the output into several files (only when output file is\n"
+                        + "given) by top-level import, by media query or to critical\n"
+                        + "styles selected by -critical, and write a manifest of them");
+
+        argp.defineOption("critical")
+                .anyValue("critical.txt")
+                .help("File listing the .classes, #ids and elements of critical\n"
+                        + "styles one per line, for -split:critical");
+
         argp.defineOption("ignore-warnings").values("true", "false")
                 .defaultValue("false")
                 .help("Let compilation succeed even though there are warnings");
 
+        argp.defineOption("profile", "-profile").help(
+                "Print the time spent in each compilation phase and in the slowest\nmixins and functions to standard error");
+
+        argp.defineOption("daemon")
+                .anyValue(String.valueOf(CompilerDaemon.DEFAULT_PORT))
+                .replacesInput()
+                .help("Run as a compiler daemon listening on the given local port\n"
+                        + "instead of compiling a file, keeping parsed imports and the\n"
+                        + "JIT warm between compilations requested with -connect");
+
+        argp.defineOption("connect")
+                .anyValue(String.valueOf(CompilerDaemon.DEFAULT_PORT))
+                .help("Compile in the daemon listening on the given local port\n"
+                        + "instead of in this process");
+
         argp.parse(args);
 
+        if (argp.isOptionSet("daemon")) {
+            final CompilerDaemon daemon = new CompilerDaemon(getPort(argp,
+                    "daemon"));
+            daemon.start();
+            // removes the token file when the daemon is killed
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        daemon.stop();
+                    } catch (IOException e) {
+                        // exiting anyway
+                    }
+                }
+            });
+            System.err.println("Listening on port " + daemon.getPort());
+            daemon.join();
+            return;
+        }
+
+        File directory = new File(".").getAbsoluteFile();
         String input = argp.getInputFile();
         String output = argp.getOutputFile();
+        Map<String, String> options = argp.getOptionValues();
+        int status = -1;
+        if (argp.isOptionSet("connect")) {
+            int port = getPort(argp, "connect");
+            try {
+                status = CompilerDaemon.compile(port, directory, input,
+                        output, options, System.out, System.err);
+            } catch (ConnectException e) {
+                System.err.println("No compiler daemon listening on port "
+                        + port + ", compiling in this process");
+            } catch (IOException e) {
+                System.err.println("Compiling in the daemon on port " + port
+                        + " failed (" + e + "), compiling in this process");
+            }
+        }
+        if (status == -1) {
+            status = compile(directory, input, output, options, null,
+                    System.out, System.err);
+        }
+        if (status != 0) {
+            // Exit with error code so Maven and others can detect compilation
+            // was not successful
+            System.exit(status);
+        }
+    }
 
-        ScssContext.UrlMode urlMode = getUrlMode(argp.getOptionValue("urlMode"));
+    /**
+     * Compiles a file with the given command line options.
+     * 
+     * @param directory
+     *            directory against which relative paths are resolved
+     * @param input
+     *            the .scss file to compile
+     * @param output
+     *            the file to write the CSS to or null for out
+     * @param options
+     *            values of the command line options as returned by
+     *            {@link ArgumentParser#getOptionValues()}
+     * @param cache
+     *            cache for parsed imports or null
+     * @param out
+     *            stream for the CSS if no output file is given
+     * @param err
+     *            stream for error messages and profiling results
+     * @return exit status, 0 if the compilation succeeded
+     * @throws Exception
+     *             if parsing or compiling the style sheet fails
+     */
+    static int compile(File directory, String input, String output,
+            Map<String, String> options, StylesheetCache cache,
+            PrintStream out, PrintStream err) throws Exception {
+        try {
+            return compile(directory, resolve(directory, input),
+                    resolve(directory, output), options, cache, out, err);
+        } catch (CompileFailure e) {
+            err.println(e.getMessage());
+            return e.status;
+        }
+    }
 
-        boolean minify = Boolean.parseBoolean(argp.getOptionValue("minify"));
-        boolean compress = Boolean
-                .parseBoolean(argp.getOptionValue("compress"));
-        boolean ignoreWarnings = Boolean.parseBoolean(argp
-                .getOptionValue("ignore-warnings"));
+    private static int compile(File directory, File in, File output,
+            Map<String, String> options, StylesheetCache cache,
+            PrintStream out, PrintStream err) throws Exception {
+        ScssContext.UrlMode urlMode = getUrlMode(options.get("urlMode"));
+
+        String minifyValue = getOption(options, "minify", "false");
+        boolean minify = Boolean.parseBoolean(minifyValue);
+        boolean compress = Boolean.parseBoolean(options.get("compress"));
+        boolean mergeMedia = Boolean.parseBoolean(options.get("merge-media"));
+        boolean mergeRules = Boolean.parseBoolean(options.get("merge-rules"));
+        String split = getOption(options, "split", "none");
+        boolean ignoreWarnings = Boolean.parseBoolean(options
+                .get("ignore-warnings"));
+        OutputPipeline pipeline = createPipeline(minifyValue, compress,
+                options);
+        CompilationProfiler profiler = null;
+        if (options.containsKey("profile")) {
+            profiler = new CompilationProfiler();
+        }
 
-        File in = new File(input);
         if (!in.canRead()) {
-            System.err.println(in.getCanonicalPath() + " could not be read!");
-            System.exit(ERROR_FILE_NOT_FOUND);
+            throw new CompileFailure(ERROR_FILE_NOT_FOUND,
+                    in.getCanonicalPath() + " could not be read!");
         }
-        input = in.getCanonicalPath();
+        String input = in.getCanonicalPath();
 
         // You can set the resolver; if none is set, VaadinResolver will be used
         // ScssStylesheet.setStylesheetResolvers(new VaadinResolver());
 
         SCSSErrorHandler errorHandler = new SCSSErrorHandler();
         errorHandler.setWarningsAreErrors(!ignoreWarnings);
-        try {
-            // Parse stylesheet
-            ScssStylesheet scss = ScssStylesheet.get(input, null,
-                    new SCSSDocumentHandlerImpl(), errorHandler);
-            if (scss == null) {
-                System.err.println("The scss file " + input
-                        + " could not be found.");
-                System.exit(ERROR_FILE_NOT_FOUND);
-            }
 
-            // Compile scss -> css
-            scss.compile(urlMode);
+        // Parse stylesheet
+        ScssStylesheet scss = ScssStylesheet.get(input, null,
+                new SCSSDocumentHandlerImpl(), errorHandler, profiler);
+        if (scss == null) {
+            throw new CompileFailure(ERROR_FILE_NOT_FOUND, "The scss file "
+                    + input + " could not be found.");
+        }
 
-            // Write result
-            Writer writer = createOutputWriter(output);
+        // Compile scss -> css
+        ScssContext context = new ScssContext(urlMode);
+        context.setStylesheetCache(cache);
+        context.setMergeMediaBlocks(mergeMedia);
+        context.setMergeDuplicateRules(mergeRules);
+        if (options.containsKey("purge")) {
+            context.setSelectorWhitelist(readWhitelist(resolve(directory,
+                    options.get("purge"))));
+        }
+        DefinitionProfiler definitionProfiler = null;
+        if (profiler != null) {
+            definitionProfiler = new DefinitionProfiler();
+            context.setDefinitionProfiler(definitionProfiler);
+        }
+        scss.compile(context);
+
+        // Write result
+        if (output == null) {
+            Writer writer = new OutputStreamWriter(out, "UTF-8");
             scss.write(writer, minify);
-            writer.close();
+            writer.flush();
+        } else if (!"none".equals(split)) {
+            BundleSplitter.write(scss,
+                    getPartitioner(split, directory, options), output,
+                    pipeline);
+        } else {
+            pipeline.write(scss, output);
+        }
 
-            if (output != null && compress) {
-                String outputCompressed = output + ".gz";
-                compressFile(output, outputCompressed);
-            }
-        } catch (Exception e) {
-            throw e;
+        if (profiler != null) {
+            profiler.printSummary(err);
+            err.println();
+            definitionProfiler.printReport(err, MAX_PROFILED_DEFINITIONS);
         }
 
-        if (errorHandler.isErrorsDetected()) {
-            // Exit with error code so Maven and others can detect compilation
-            // was not successful
-            System.exit(ERROR_COMPILE_FAILED);
+        return errorHandler.isErrorsDetected() ? ERROR_COMPILE_FAILED : 0;
+    }
+
+    // for options passed to the daemon by other clients than SassCompiler
+    private static String getOption(Map<String, String> options,
+            String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static File resolve(File directory, String path) {
+        if (path == null) {
+            return null;
         }
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(directory, path);
     }
 
-    private static void compressFile(String uncompressedFileName,
-            String compressedFileName) throws FileNotFoundException,
-            IOException {
-        FileInputStream uncompressedStream = new FileInputStream(
-                uncompressedFileName);
-        GZIPOutputStream gzos = new GZIPOutputStream(new FileOutputStream(
-                compressedFileName));
+    private static int getPort(ArgumentParser argp, String option) {
+        String port = argp.getOptionValue(option);
+        try {
+            return Integer.parseInt(port);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid port: " + port);
+            System.exit(ERROR_INVALID_ARGUMENT);
+            return -1;
+        }
+    }
 
-        byte[] buffer = new byte[1024];
-        int len;
-        while ((len = uncompressedStream.read(buffer)) > 0) {
-            gzos.write(buffer, 0, len);
+    private static OutputPipeline createPipeline(String minify,
+            boolean compress, Map<String, String> options)
+            throws CompileFailure {
+        OutputPipeline pipeline = new OutputPipeline();
+        pipeline.setExpanded(!"true".equals(minify));
+        pipeline.setMinified(!"false".equals(minify));
+        if (compress) {
+            pipeline.setCompressionLevel(Integer.parseInt(getOption(options,
+                    "compression-level", "6")));
+            pipeline.addGzip();
         }
+        String bufferSize = options.get("buffer-size");
+        if (bufferSize != null) {
+            try {
+                pipeline.setBufferSize(Integer.parseInt(bufferSize));
+            } catch (IllegalArgumentException e) {
+                throw new CompileFailure(ERROR_INVALID_ARGUMENT,
+                        "Invalid buffer size: " + bufferSize);
+            }
+        }
+        return pipeline;
+    }
 
-        uncompressedStream.close();
+    private static BundleSplitter.Partitioner getPartitioner(String split,
+            File directory, Map<String, String> options) throws IOException,
+            CompileFailure {
+        if ("import".equals(split)) {
+            return BundleSplitter.byImport();
+        } else if ("media".equals(split)) {
+            return BundleSplitter.byMedia();
+        }
+        if (!options.containsKey("critical")) {
+            throw new CompileFailure(ERROR_FILE_NOT_FOUND,
+                    "-split:critical requires -critical");
+        }
+        final SelectorWhitelist critical = readWhitelist(resolve(directory,
+                options.get("critical")));
+        return BundleSplitter.bySelector("critical",
+                new BundleSplitter.SelectorFilter() {
+                    @Override
+                    public boolean accept(Selector selector) {
+                        return critical.canMatch(selector);
+                    }
+                });
+    }
 
-        gzos.finish();
-        gzos.close();
+    private static SelectorWhitelist readWhitelist(File file)
+            throws IOException, CompileFailure {
+        if (!file.canRead()) {
+            throw new CompileFailure(ERROR_FILE_NOT_FOUND, "The whitelist "
+                    + file + " could not be read!");
+        }
+        if (file.isDirectory()) {
+            return SelectorWhitelist.scan(file);
+        } else {
+            return SelectorWhitelist.read(file);
+        }
     }
 
     private static ScssContext.UrlMode getUrlMode(String urlMode) {
@@ -149,13 +380,16 @@ public class SassCompiler {
         return ScssContext.UrlMode.MIXED;
     }
 
-    private static Writer createOutputWriter(String filename)
-            throws IOException {
-        if (filename == null) {
-            return new OutputStreamWriter(System.out, "UTF-8");
-        } else {
-            File file = new File(filename);
-            return new FileWriter(file);
+    /**
+     * Thrown when the compilation cannot proceed, e.g. because of a missing
+     * file.
+     */
+    private static class CompileFailure extends Exception {
+        private final int status;
+
+        private CompileFailure(int status, String message) {
+            super(message);
+            this.status = status;
         }
     }
 }
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.vaadin.sass.internal.selector.Selector;
+import com.vaadin.sass.internal.tree.BlockNode;
+import com.vaadin.sass.internal.tree.MediaNode;
+import com.vaadin.sass.internal.tree.Node;
+
+/**
+ * Splits the output of a compiled style sheet into several CSS files
+ * (bundles), e.g. to load critical styles first and defer the rest. Each
+ * top-level node of the compiled style sheet is assigned to one bundle by a
+ * {@link Partitioner}; nodes keep their relative order within a bundle.
+ * 
+ * The bundles are written in parallel together with a JSON manifest listing
+ * them in the order of their first node in the style sheet, which is the order
+ * in which they should be loaded. The cascade order of rules in different
+ * bundles is not preserved.
+ * 
+ * @author Vaadin Ltd
+ */
+public class BundleSplitter {
+
+    /**
+     * Name of the bundle for nodes that a partitioner does not assign to any
+     * other bundle.
+     */
+    public static final String MAIN_BUNDLE = "main";
+
+    /**
+     * Assigns top-level nodes of a compiled style sheet to bundles.
+     */
+    public interface Partitioner {
+        /**
+         * Returns the bundle of a top-level node.
+         * 
+         * @param stylesheet
+         *            the compiled style sheet
+         * @param node
+         *            top-level node of the style sheet
+         * @return bundle name or null for {@link BundleSplitter#MAIN_BUNDLE}
+         */
+        public String getBundle(ScssStylesheet stylesheet, Node node);
+    }
+
+    /**
+     * Selects the selectors for a bundle, see
+     * {@link BundleSplitter#bySelector(String, SelectorFilter)}.
+     */
+    public interface SelectorFilter {
+        public boolean accept(Selector selector);
+    }
+
+    /**
+     * A bundle that has been written.
+     */
+    public static class Bundle {
+        private final String name;
+        private final int nodes;
+        private List<File> files;
+
+        private Bundle(String name, int nodes) {
+            this.name = name;
+            this.nodes = nodes;
+        }
+
+        private void setFiles(List<File> files) {
+            this.files = files;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the primary (first written) file of the bundle.
+         */
+        public File getFile() {
+            return files.get(0);
+        }
+
+        /**
+         * Returns all the written files of the bundle, e.g. expanded,
+         * minified and gzipped variants.
+         */
+        public List<File> getFiles() {
+            return files;
+        }
+
+        /**
+         * Returns the number of top-level nodes (rule blocks, @media blocks
+         * etc.) in the bundle.
+         */
+        public int getNodeCount() {
+            return nodes;
+        }
+
+        /**
+         * Returns the size of the primary file in bytes.
+         */
+        public long getBytes() {
+            return getFile().length();
+        }
+    }
+
+    /**
+     * Returns a partitioner that assigns nodes to bundles by the top-level
+     * @import they came from (see
+     * {@link ScssStylesheet#getImportOrigin(Node)}). The bundle name is the
+     * imported path.
+     */
+    public static Partitioner byImport() {
+        return new Partitioner() {
+            @Override
+            public String getBundle(ScssStylesheet stylesheet, Node node) {
+                return stylesheet.getImportOrigin(node);
+            }
+        };
+    }
+
+    /**
+     * Returns a partitioner that assigns @media blocks to a bundle per media
+     * query and other nodes to the main bundle. The bundle name is the media
+     * query.
+     */
+    public static Partitioner byMedia() {
+        return new Partitioner() {
+            @Override
+            public String getBundle(ScssStylesheet stylesheet, Node node) {
+                if (node instanceof MediaNode) {
+                    return ((MediaNode) node).getMediaQueryString();
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Returns a partitioner that assigns rule blocks with at least one
+     * selector accepted by a filter, and @media blocks containing such blocks,
+     * to a bundle. Other nodes are in the main bundle.
+     * 
+     * @param bundle
+     *            name of the bundle for the selected blocks, e.g. "critical"
+     * @param filter
+     *            selector filter
+     */
+    public static Partitioner bySelector(final String bundle,
+            final SelectorFilter filter) {
+        return new Partitioner() {
+            @Override
+            public String getBundle(ScssStylesheet stylesheet, Node node) {
+                return isSelected(node) ? bundle : null;
+            }
+
+            private boolean isSelected(Node node) {
+                if (node instanceof BlockNode) {
+                    for (Selector selector : ((BlockNode) node)
+                            .getSelectorList()) {
+                        if (filter.accept(selector)) {
+                            return true;
+                        }
+                    }
+                } else if (node instanceof MediaNode) {
+                    for (Node child : node.getChildren()) {
+                        if (isSelected(child)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Assigns the top-level nodes of a compiled style sheet to bundles.
+     * 
+     * @param stylesheet
+     *            compiled style sheet
+     * @param partitioner
+     *            partitioner to use
+     * @return map from bundle name to the nodes of the bundle, in the order of
+     *         the first node of each bundle
+     */
+    public static Map<String, List<Node>> split(ScssStylesheet stylesheet,
+            Partitioner partitioner) {
+        Map<String, List<Node>> bundles = new LinkedHashMap<String, List<Node>>();
+        for (Node node : stylesheet.getChildren()) {
+            String name = partitioner.getBundle(stylesheet, node);
+            if (name == null) {
+                name = MAIN_BUNDLE;
+            }
+            List<Node> nodes = bundles.get(name);
+            if (nodes == null) {
+                nodes = new ArrayList<Node>();
+                bundles.put(name, nodes);
+            }
+            nodes.add(node);
+        }
+        return bundles;
+    }
+
+    /**
+     * Writes the bundles of a compiled style sheet in parallel, and a manifest
+     * describing them. The main bundle is written to the given file, other
+     * bundles next to it with the bundle name appended to the file name, e.g.
+     * styles-critical.css. The manifest is written to e.g.
+     * styles.bundles.json.
+     * 
+     * @param stylesheet
+     *            compiled style sheet
+     * @param partitioner
+     *            partitioner to use
+     * @param mainFile
+     *            file for the main bundle
+     * @param minify
+     *            true to minify the bundles
+     * @return the written bundles in the order of the manifest
+     * @throws IOException
+     */
+    public static List<Bundle> write(ScssStylesheet stylesheet,
+            Partitioner partitioner, File mainFile, boolean minify)
+            throws IOException {
+        OutputPipeline pipeline = new OutputPipeline();
+        pipeline.setExpanded(!minify);
+        pipeline.setMinified(minify);
+        return write(stylesheet, partitioner, mainFile, pipeline);
+    }
+
+    /**
+     * Writes the bundles of a compiled style sheet in parallel in the formats
+     * of an output pipeline (e.g. expanded, minified and gzipped), and a
+     * manifest describing them. The files of the main bundle are named as
+     * with {@link OutputPipeline#write(ScssStylesheet, File)}, other bundles
+     * are written next to them with the bundle name appended to the file
+     * name, e.g. styles-critical.css. The manifest is written to e.g.
+     * styles.bundles.json.
+     * 
+     * @param stylesheet
+     *            compiled style sheet
+     * @param partitioner
+     *            partitioner to use
+     * @param mainFile
+     *            file for the main bundle
+     * @param pipeline
+     *            output formats to write
+     * @return the written bundles in the order of the manifest
+     * @throws IOException
+     */
+    public static List<Bundle> write(final ScssStylesheet stylesheet,
+            Partitioner partitioner, File mainFile,
+            final OutputPipeline pipeline) throws IOException {
+        Map<String, List<Node>> nodesByBundle = split(stylesheet, partitioner);
+        String baseName = getBaseName(mainFile);
+        Set<String> fileNames = new HashSet<String>();
+        fileNames.add(mainFile.getName());
+
+        List<Bundle> bundles = new ArrayList<Bundle>();
+        List<Callable<List<File>>> tasks = new ArrayList<Callable<List<File>>>();
+        for (Map.Entry<String, List<Node>> entry : nodesByBundle.entrySet()) {
+            String name = entry.getKey();
+            File file = mainFile;
+            if (!MAIN_BUNDLE.equals(name)) {
+                file = new File(mainFile.getParentFile(), getFileName(
+                        baseName, name, fileNames));
+            }
+            final File bundleFile = file;
+            final List<Node> nodes = entry.getValue();
+            bundles.add(new Bundle(name, nodes.size()));
+            tasks.add(new Callable<List<File>>() {
+                @Override
+                public List<File> call() throws IOException {
+                    return pipeline.write(stylesheet, nodes, bundleFile);
+                }
+            });
+        }
+
+        int threads = Math.max(1, Math.min(tasks.size(), Runtime.getRuntime()
+                .availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<File>>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                bundles.get(i).setFiles(results.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing bundles", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Writing bundles failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        writeManifest(new File(mainFile.getParentFile(), baseName
+                + ".bundles.json"), bundles);
+        return bundles;
+    }
+
+    private static String getBaseName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String getFileName(String baseName, String bundle,
+            Set<String> usedNames) {
+        StringBuilder suffix = new StringBuilder();
+        for (char c : bundle.toLowerCase().toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                suffix.append(c);
+            } else if (suffix.length() > 0
+                    && suffix.charAt(suffix.length() - 1) != '-') {
+                suffix.append('-');
+            }
+        }
+        while (suffix.length() > 0
+                && suffix.charAt(suffix.length() - 1) == '-') {
+            suffix.setLength(suffix.length() - 1);
+        }
+        if (suffix.length() == 0) {
+            suffix.append("bundle");
+        }
+        String fileName = baseName + "-" + suffix + ".css";
+        for (int i = 2; !usedNames.add(fileName); i++) {
+            fileName = baseName + "-" + suffix + "-" + i + ".css";
+        }
+        return fileName;
+    }
+
+    private static void writeManifest(File file, List<Bundle> bundles)
+            throws IOException {
+        StringBuilder json = new StringBuilder("{\n  \"bundles\": [");
+        for (int i = 0; i < bundles.size(); i++) {
+            Bundle bundle = bundles.get(i);
+            json.append(i > 0 ? ",\n" : "\n");
+            json.append("    { \"name\": ").append(quote(bundle.getName()));
+            json.append(", \"file\": ").append(
+                    quote(bundle.getFile().getName()));
+            json.append(", \"nodes\": ").append(bundle.getNodeCount());
+            json.append(", \"bytes\": ").append(bundle.getBytes());
+            List<File> variants = bundle.getFiles().subList(1,
+                    bundle.getFiles().size());
+            if (!variants.isEmpty()) {
+                json.append(", \"variants\": [");
+                for (int j = 0; j < variants.size(); j++) {
+                    json.append(j > 0 ? ", " : "").append(
+                            quote(variants.get(j).getName()));
+                }
+                json.append("]");
+            }
+            json.append(" }");
+        }
+        json.append("\n  ]\n}\n");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                "UTF-8");
+        try {
+            writer.write(json.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
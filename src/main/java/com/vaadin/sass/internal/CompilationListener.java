@@ -0,0 +1,112 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+/**
+ * Receives timings of the phases of a compilation. A listener is set on the
+ * main style sheet (see {@link ScssStylesheet#setCompilationListener}) or
+ * passed to
+ * {@link ScssStylesheet#get(String, ScssStylesheet, com.vaadin.sass.internal.handler.SCSSDocumentHandler, com.vaadin.sass.internal.handler.SCSSErrorHandler, CompilationListener)}
+ * and is inherited by all imported style sheets.
+ * 
+ * All durations are in nanoseconds. Listeners may be called from several
+ * threads if the same listener is used for concurrent compilations.
+ * 
+ * @author Vaadin Ltd
+ */
+public interface CompilationListener {
+
+    /**
+     * Called when a style sheet or an import has been resolved.
+     * 
+     * @param identifier
+     *            the identifier (e.g. imported path) that was resolved
+     * @param uri
+     *            URI of the resolved style sheet
+     * @param nanos
+     *            time spent in the resolvers
+     */
+    public void stylesheetResolved(String identifier, String uri, long nanos);
+
+    /**
+     * Called when a style sheet or an import has been parsed.
+     * 
+     * @param uri
+     *            URI of the parsed style sheet
+     * @param bytes
+     *            size of the source; bytes for byte streams and characters
+     *            for character streams
+     * @param nanos
+     *            time spent parsing
+     */
+    public void stylesheetParsed(String uri, long bytes, long nanos);
+
+    /**
+     * Called when the traversal of the node tree (evaluation of variables,
+     * mixins, functions, imports etc.) has finished. The time includes
+     * resolving and parsing imports.
+     * 
+     * @param nanos
+     *            time spent traversing
+     */
+    public void traversalFinished(long nanos);
+
+    /**
+     * Called when the @extend modification of the node tree has finished.
+     * 
+     * @param nanos
+     *            time spent modifying the tree
+     */
+    public void extendFinished(long nanos);
+
+    /**
+     * Called when an optional output optimization of the compiled node tree
+     * has finished.
+     * 
+     * @param optimization
+     *            name of the optimization, e.g. "merge-media"
+     * @param bytesSaved
+     *            number of bytes the optimization saved in the unminified
+     *            output
+     * @param nanos
+     *            time spent optimizing
+     */
+    public void optimizationFinished(String optimization, long bytesSaved,
+            long nanos);
+
+    /**
+     * Called when the compiled style sheet has been written out.
+     * 
+     * @param minified
+     *            true if the output was minified
+     * @param chars
+     *            number of characters before minification
+     * @param nanos
+     *            time spent printing and minifying
+     */
+    public void serializationFinished(boolean minified, long chars, long nanos);
+
+    /**
+     * Called when the output has been compressed (gzipped).
+     * 
+     * @param bytes
+     *            size of the compressed output
+     * @param nanos
+     *            time spent compressing
+     */
+    public void compressionFinished(long bytes, long nanos);
+
+}
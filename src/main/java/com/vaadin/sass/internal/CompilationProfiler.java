@@ -0,0 +1,222 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link CompilationListener} that collects the timings of compilations and
+ * prints them as a summary table. This is used by the command line compiler
+ * when profiling is enabled.
+ * 
+ * @author Vaadin Ltd
+ */
+public class CompilationProfiler implements CompilationListener {
+
+    private static final int MAX_SLOWEST_STYLESHEETS = 10;
+
+    /**
+     * Accumulated totals for a phase.
+     */
+    private static class Phase {
+        private final String name;
+        private int count = 0;
+        private long nanos = 0;
+        private long size = 0;
+
+        public Phase(String name) {
+            this.name = name;
+        }
+
+        public void add(long size, long nanos) {
+            count++;
+            this.size += size;
+            this.nanos += nanos;
+        }
+    }
+
+    /**
+     * Timings of one style sheet.
+     */
+    private static class StylesheetTiming {
+        private final String uri;
+        private long resolveNanos = 0;
+        private long parseNanos = 0;
+        private long bytes = 0;
+
+        public StylesheetTiming(String uri) {
+            this.uri = uri;
+        }
+
+        public long getTotalNanos() {
+            return resolveNanos + parseNanos;
+        }
+    }
+
+    private final Phase resolve = new Phase("resolve");
+    private final Phase parse = new Phase("parse");
+    private final Phase traversal = new Phase("traversal");
+    private final Phase extend = new Phase("extend");
+    private final Phase serialization = new Phase("serialization");
+    private final Phase compression = new Phase("compression");
+
+    // optional output optimizations by name, the size is the bytes saved
+    private final Map<String, Phase> optimizations = new LinkedHashMap<String, Phase>();
+
+    private final Map<String, StylesheetTiming> stylesheets = new LinkedHashMap<String, StylesheetTiming>();
+
+    @Override
+    public synchronized void stylesheetResolved(String identifier,
+            String uri, long nanos) {
+        resolve.add(0, nanos);
+        getTiming(uri).resolveNanos += nanos;
+    }
+
+    @Override
+    public synchronized void stylesheetParsed(String uri, long bytes,
+            long nanos) {
+        parse.add(bytes, nanos);
+        StylesheetTiming timing = getTiming(uri);
+        timing.parseNanos += nanos;
+        timing.bytes = bytes;
+    }
+
+    @Override
+    public synchronized void traversalFinished(long nanos) {
+        traversal.add(0, nanos);
+    }
+
+    @Override
+    public synchronized void extendFinished(long nanos) {
+        extend.add(0, nanos);
+    }
+
+    @Override
+    public synchronized void optimizationFinished(String optimization,
+            long bytesSaved, long nanos) {
+        Phase phase = optimizations.get(optimization);
+        if (phase == null) {
+            phase = new Phase(optimization);
+            optimizations.put(optimization, phase);
+        }
+        phase.add(bytesSaved, nanos);
+    }
+
+    @Override
+    public synchronized void serializationFinished(boolean minified,
+            long chars, long nanos) {
+        serialization.add(chars, nanos);
+    }
+
+    @Override
+    public synchronized void compressionFinished(long bytes, long nanos) {
+        compression.add(bytes, nanos);
+    }
+
+    /**
+     * Returns the total time of a phase in nanoseconds.
+     * 
+     * @param phase
+     *            one of "resolve", "parse", "traversal", "extend",
+     *            "serialization", "compression" or the name of an output
+     *            optimization
+     * @return total time of the phase or -1 if there is no such phase
+     */
+    public synchronized long getTotalNanos(String phase) {
+        for (Phase p : getPhases()) {
+            if (p.name.equals(phase)) {
+                return p.nanos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Prints a summary table of the phases and the slowest style sheets to
+     * resolve and parse. For output optimizations, the size column shows the
+     * number of bytes saved.
+     * 
+     * @param out
+     *            stream to print to
+     */
+    public synchronized void printSummary(PrintStream out) {
+        out.println(String.format("%-16s %8s %12s %12s", "Phase", "Count",
+                "Time (ms)", "Size"));
+        for (Phase phase : getPhases()) {
+            if (phase.count > 0) {
+                out.println(String.format("%-16s %8d %12.2f %12d",
+                        phase.name, phase.count, toMillis(phase.nanos),
+                        phase.size));
+            }
+        }
+        // traversal includes resolving and parsing of imports
+        long totalNanos = traversal.nanos + extend.nanos + serialization.nanos
+                + compression.nanos;
+        for (Phase optimization : optimizations.values()) {
+            totalNanos += optimization.nanos;
+        }
+        out.println(String.format("%-16s %8s %12.2f", "total", "",
+                toMillis(totalNanos)));
+
+        if (!stylesheets.isEmpty()) {
+            List<StylesheetTiming> timings = new ArrayList<StylesheetTiming>(
+                    stylesheets.values());
+            Collections.sort(timings, new Comparator<StylesheetTiming>() {
+                @Override
+                public int compare(StylesheetTiming o1, StylesheetTiming o2) {
+                    long diff = o2.getTotalNanos() - o1.getTotalNanos();
+                    return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                }
+            });
+            out.println();
+            out.println(String.format("%12s %12s %10s  %s", "Resolve (ms)",
+                    "Parse (ms)", "Bytes", "Style sheet"));
+            for (StylesheetTiming timing : timings.subList(0,
+                    Math.min(MAX_SLOWEST_STYLESHEETS, timings.size()))) {
+                out.println(String.format("%12.2f %12.2f %10d  %s",
+                        toMillis(timing.resolveNanos),
+                        toMillis(timing.parseNanos), timing.bytes, timing.uri));
+            }
+        }
+    }
+
+    private List<Phase> getPhases() {
+        List<Phase> phases = new ArrayList<Phase>();
+        Collections.addAll(phases, resolve, parse, traversal, extend);
+        phases.addAll(optimizations.values());
+        Collections.addAll(phases, serialization, compression);
+        return phases;
+    }
+
+    private StylesheetTiming getTiming(String uri) {
+        StylesheetTiming timing = stylesheets.get(uri);
+        if (timing == null) {
+            timing = new StylesheetTiming(uri);
+            stylesheets.put(uri, timing);
+        }
+        return timing;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+}
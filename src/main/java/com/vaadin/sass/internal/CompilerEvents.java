@@ -0,0 +1,229 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Emits events for the phases of a compilation to JDK Flight Recorder (JFR)
+ * when running on a JVM that supports it, so that compiler work can be
+ * correlated with e.g. GC and allocation data in JDK Mission Control.
+ * 
+ * The compiler targets Java versions without JFR, so the JFR event classes in
+ * the package com.vaadin.sass.internal.jfr are only loaded when the
+ * {@code jdk.jfr} API is present. Otherwise, and when disabled with the system
+ * property {@value #DISABLE_PROPERTY}, this no-op implementation is used.
+ * Registering the event classes with JFR takes hundreds of milliseconds, so
+ * they are only loaded once the flight recorder has been initialized, which is
+ * checked again whenever a style sheet is parsed.
+ * 
+ * Each begin method returns an event handle or null if the event is not being
+ * recorded; the handle must be passed to the corresponding end method. The
+ * end methods do nothing for a null handle, so callers should skip any work
+ * needed only for the event details when the handle is null.
+ * 
+ * @author Vaadin Ltd
+ */
+public class CompilerEvents {
+
+    public static final String DISABLE_PROPERTY = "vaadin.sass.jfr.disabled";
+
+    private static final String JFR_INSTALLER = "com.vaadin.sass.internal.jfr.JfrInstaller";
+
+    private static volatile CompilerEvents instance = new CompilerEvents();
+
+    // JfrInstaller.install() until it has succeeded, null if JFR is not used
+    private static volatile Method jfrInstall;
+
+    static {
+        loadJfr();
+    }
+
+    protected CompilerEvents() {
+    }
+
+    /**
+     * Returns the event emitter to use.
+     * 
+     * @return event emitter
+     */
+    public static CompilerEvents get() {
+        return instance;
+    }
+
+    /**
+     * Replaces the event emitter. Used for installing the JFR implementation
+     * when the flight recorder is initialized.
+     * 
+     * @param events
+     *            event emitter to use
+     */
+    public static void setInstance(CompilerEvents events) {
+        instance = events;
+    }
+
+    private static void loadJfr() {
+        if (Boolean.getBoolean(DISABLE_PROPERTY)) {
+            return;
+        }
+        try {
+            Class.forName("jdk.jfr.Event");
+        } catch (ClassNotFoundException e) {
+            // JFR not available
+            return;
+        }
+        try {
+            jfrInstall = Class.forName(JFR_INSTALLER).getMethod("install");
+        } catch (Throwable e) {
+            // e.g. the compiler was built without the JFR events
+            Logger.getLogger(CompilerEvents.class.getName()).log(Level.FINE,
+                    "JFR events not available", e);
+            return;
+        }
+        installJfr();
+    }
+
+    private static void installJfr() {
+        Method install = jfrInstall;
+        try {
+            if (install != null && (Boolean) install.invoke(null)) {
+                jfrInstall = null;
+            }
+        } catch (Throwable e) {
+            jfrInstall = null;
+            Logger.getLogger(CompilerEvents.class.getName()).log(Level.FINE,
+                    "JFR events not available", e);
+        }
+    }
+
+    /**
+     * Starts a style sheet parse event.
+     * 
+     * @return event handle or null if not recording
+     */
+    public Object beginParse() {
+        // a recording may have been started since the previous parse
+        installJfr();
+        return null;
+    }
+
+    /**
+     * Ends a style sheet parse event.
+     * 
+     * @param event
+     *            handle from {@link #beginParse()}
+     * @param uri
+     *            URI of the style sheet
+     * @param bytes
+     *            size of the source
+     */
+    public void endParse(Object event, String uri, long bytes) {
+    }
+
+    /**
+     * Starts an event for resolving a style sheet with a single resolver.
+     * 
+     * @return event handle or null if not recording
+     */
+    public Object beginResolve() {
+        return null;
+    }
+
+    /**
+     * Ends an event for resolving a style sheet with a single resolver.
+     * 
+     * @param event
+     *            handle from {@link #beginResolve()}
+     * @param resolver
+     *            name of the resolver
+     * @param identifier
+     *            the identifier to resolve
+     * @param uri
+     *            URI of the resolved style sheet or null if not found by the
+     *            resolver
+     */
+    public void endResolve(Object event, String resolver, String identifier,
+            String uri) {
+    }
+
+    /**
+     * Starts a mixin expansion event.
+     * 
+     * @return event handle or null if not recording
+     */
+    public Object beginMixin() {
+        return null;
+    }
+
+    /**
+     * Ends a mixin expansion event.
+     * 
+     * @param event
+     *            handle from {@link #beginMixin()}
+     * @param name
+     *            name of the mixin
+     * @param nodes
+     *            number of nodes generated
+     */
+    public void endMixin(Object event, String name, int nodes) {
+    }
+
+    /**
+     * Starts an @extend processing event.
+     * 
+     * @return event handle or null if not recording
+     */
+    public Object beginExtend() {
+        return null;
+    }
+
+    /**
+     * Ends an @extend processing event.
+     * 
+     * @param event
+     *            handle from {@link #beginExtend()}
+     * @param selectorsIn
+     *            number of selectors before processing
+     * @param selectorsOut
+     *            number of selectors after processing
+     */
+    public void endExtend(Object event, int selectorsIn, int selectorsOut) {
+    }
+
+    /**
+     * Starts an output writing event.
+     * 
+     * @return event handle or null if not recording
+     */
+    public Object beginWrite() {
+        return null;
+    }
+
+    /**
+     * Ends an output writing event.
+     * 
+     * @param event
+     *            handle from {@link #beginWrite()}
+     * @param minified
+     *            true if the output was minified
+     * @param chars
+     *            number of characters before minification
+     */
+    public void endWrite(Object event, boolean minified, long chars) {
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.sass.internal.tree.Node;
+
+/**
+ * Collects call statistics of mixins, user-defined functions and built-in
+ * functions during a compilation: the number of calls, cumulative and self
+ * time and the number of nodes generated. The statistics can be printed as a
+ * report sorted by self time or written as collapsed stacks for flame graph
+ * tools.
+ * 
+ * A profiler is enabled for a compilation with
+ * {@link ScssContext#setDefinitionProfiler(DefinitionProfiler)}. It is not
+ * thread safe and should not be shared by concurrent compilations.
+ * 
+ * @author Vaadin Ltd
+ */
+public class DefinitionProfiler {
+
+    public enum Kind {
+        MIXIN("mixin"), FUNCTION("function"), BUILTIN("builtin");
+
+        private final String label;
+
+        private Kind(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Statistics of one mixin or function.
+     */
+    public static class Entry {
+        private final Kind kind;
+        private final String name;
+        private int calls = 0;
+        private long cumulativeNanos = 0;
+        private long selfNanos = 0;
+        private long nodes = 0;
+        // number of active calls, to not count recursive calls twice
+        private int active = 0;
+
+        private Entry(Kind kind, String name) {
+            this.kind = kind;
+            this.name = name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCalls() {
+            return calls;
+        }
+
+        /**
+         * Returns the total time in nanoseconds spent in calls, including the
+         * time of other calls made by them. Time spent in recursive calls is
+         * only counted once.
+         * 
+         * @return cumulative time in nanoseconds
+         */
+        public long getCumulativeNanos() {
+            return cumulativeNanos;
+        }
+
+        /**
+         * Returns the time in nanoseconds spent in calls, excluding the time
+         * of profiled calls made by them.
+         * 
+         * @return self time in nanoseconds
+         */
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+
+        /**
+         * Returns the number of nodes generated by calls. This is only
+         * counted for mixins.
+         * 
+         * @return number of nodes generated
+         */
+        public long getNodes() {
+            return nodes;
+        }
+    }
+
+    /**
+     * An active call.
+     */
+    private static class Frame {
+        private final Entry entry;
+        private final String stack;
+        private final long start;
+        private long childNanos = 0;
+
+        public Frame(Entry entry, String stack, long start) {
+            this.entry = entry;
+            this.stack = stack;
+            this.start = start;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private final List<Frame> frames = new ArrayList<Frame>();
+
+    // self time by collapsed call stack
+    private final Map<String, Long> stacks = new LinkedHashMap<String, Long>();
+
+    /**
+     * Marks the beginning of a call. Every call to this method must be
+     * followed by a call to {@link #exit(int)}.
+     * 
+     * @param kind
+     *            type of the called definition
+     * @param name
+     *            name of the called mixin or function
+     */
+    public void enter(Kind kind, String name) {
+        String key = kind.label + ":" + name;
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(kind, name);
+            entries.put(key, entry);
+        }
+        entry.active++;
+        String stack = frames.isEmpty() ? key
+                : frames.get(frames.size() - 1).stack + ";" + key;
+        frames.add(new Frame(entry, stack, System.nanoTime()));
+    }
+
+    /**
+     * Marks the end of the latest call started with
+     * {@link #enter(Kind, String)}.
+     * 
+     * @param nodes
+     *            number of nodes generated by the call
+     */
+    public void exit(int nodes) {
+        long end = System.nanoTime();
+        Frame frame = frames.remove(frames.size() - 1);
+        long elapsed = end - frame.start;
+        long self = elapsed - frame.childNanos;
+        Entry entry = frame.entry;
+        entry.calls++;
+        entry.selfNanos += self;
+        entry.nodes += nodes;
+        entry.active--;
+        if (entry.active == 0) {
+            entry.cumulativeNanos += elapsed;
+        }
+        if (!frames.isEmpty()) {
+            frames.get(frames.size() - 1).childNanos += elapsed;
+        }
+        Long stackNanos = stacks.get(frame.stack);
+        stacks.put(frame.stack, stackNanos == null ? self : stackNanos + self);
+    }
+
+    /**
+     * Returns the statistics of all called definitions sorted by decreasing
+     * self time.
+     * 
+     * @return list of statistics
+     */
+    public List<Entry> getEntries() {
+        List<Entry> result = new ArrayList<Entry>(entries.values());
+        Collections.sort(result, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                if (o1.selfNanos != o2.selfNanos) {
+                    return o1.selfNanos > o2.selfNanos ? -1 : 1;
+                }
+                return o1.name.compareTo(o2.name);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Prints the statistics sorted by decreasing self time.
+     * 
+     * @param out
+     *            stream to print to
+     * @param maxEntries
+     *            maximum number of definitions to print
+     */
+    public void printReport(PrintStream out, int maxEntries) {
+        out.println(String.format("%-8s %8s %12s %12s %8s  %s", "Kind",
+                "Calls", "Total (ms)", "Self (ms)", "Nodes", "Name"));
+        List<Entry> sorted = getEntries();
+        for (Entry entry : sorted.subList(0,
+                Math.min(maxEntries, sorted.size()))) {
+            out.println(String.format("%-8s %8d %12.2f %12.2f %8d  %s",
+                    entry.kind, entry.calls,
+                    entry.cumulativeNanos / 1000000.0,
+                    entry.selfNanos / 1000000.0, entry.nodes, entry.name));
+        }
+    }
+
+    /**
+     * Writes the self times by call stack in the collapsed stack format used
+     * by flame graph tools: one line per stack with the frames separated by
+     * semicolons, followed by the self time in microseconds.
+     * 
+     * @param writer
+     *            writer to write to
+     * @throws IOException
+     */
+    public void writeCollapsedStacks(Writer writer) throws IOException {
+        for (Map.Entry<String, Long> stack : stacks.entrySet()) {
+            writer.write(stack.getKey());
+            writer.write(' ');
+            writer.write(Long.toString(stack.getValue() / 1000));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Counts the nodes in the given subtrees.
+     * 
+     * @param nodes
+     *            root nodes of the subtrees
+     * @return total number of nodes
+     */
+    public static int countNodes(Collection<Node> nodes) {
+        int count = 0;
+        for (Node node : nodes) {
+            count += 1 + countNodes(node.getChildren());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.vaadin.sass.internal.tree.Node;
+import com.vaadin.sass.internal.util.TeeOutputStream;
+import com.yahoo.platform.yui.compressor.CssCompressor;
+
+/**
+ * Writes a compiled style sheet in several formats at once: expanded CSS,
+ * minified CSS and precompressed (e.g. gzipped) variants of them. The style
+ * sheet is serialized only once, and each format is written through a tee to
+ * its file and to the compressors, so nothing is read back from disk.
+ * 
+ * @author Vaadin Ltd
+ */
+public class OutputPipeline {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Creates a precompressed variant of an output file, e.g. a gzipped one.
+     */
+    public interface Compressor {
+        /**
+         * Returns the suffix appended to the name of the uncompressed file,
+         * e.g. ".gz".
+         */
+        public String getSuffix();
+
+        /**
+         * Returns a stream that compresses the data written to it into out.
+         * The returned stream is closed after writing, which must finish the
+         * compression and close out.
+         */
+        public OutputStream compress(OutputStream out) throws IOException;
+    }
+
+    private boolean expanded = true;
+    private boolean minified = false;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private final List<Compressor> compressors = new ArrayList<Compressor>();
+
+    /**
+     * Sets whether expanded (normal) CSS is written. The default is true.
+     */
+    public void setExpanded(boolean expanded) {
+        this.expanded = expanded;
+    }
+
+    public boolean isExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Sets whether minified CSS is written. The default is false.
+     */
+    public void setMinified(boolean minified) {
+        this.minified = minified;
+    }
+
+    public boolean isMinified() {
+        return minified;
+    }
+
+    /**
+     * Sets the compression level (0-9) of gzipped variants. The default is
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if ((compressionLevel < 0 || compressionLevel > 9)
+                && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level "
+                    + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the size of the buffers used for writing files and compressing.
+     * The default is {@value #DEFAULT_BUFFER_SIZE} bytes.
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size "
+                    + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Adds a precompressed variant of each written file.
+     * 
+     * @param compressor
+     *            compressor creating the variant
+     */
+    public void addCompressor(Compressor compressor) {
+        compressors.add(compressor);
+    }
+
+    /**
+     * Adds a gzipped variant (suffix .gz) of each written file, using the
+     * compression level and buffer size of this pipeline.
+     */
+    public void addGzip() {
+        addCompressor(new Compressor() {
+            @Override
+            public String getSuffix() {
+                return ".gz";
+            }
+
+            @Override
+            public OutputStream compress(OutputStream out) throws IOException {
+                return new GZIPOutputStream(out, bufferSize) {
+                    {
+                        def.setLevel(compressionLevel);
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * Returns the file that the minified CSS is written to when the expanded
+     * CSS is written to file: file itself if expanded CSS is not written,
+     * otherwise e.g. styles.min.css for styles.css.
+     */
+    public File getMinifiedFile(File file) {
+        if (!expanded) {
+            return file;
+        }
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String minName = dot > 0 ? name.substring(0, dot) + ".min"
+                + name.substring(dot) : name + ".min";
+        return new File(file.getParentFile(), minName);
+    }
+
+    /**
+     * Writes a compiled style sheet in the formats of this pipeline.
+     * 
+     * @param stylesheet
+     *            compiled style sheet
+     * @param file
+     *            file for the expanded CSS, see also
+     *            {@link #getMinifiedFile(File)}
+     * @return the written files, starting with the uncompressed ones
+     * @throws IOException
+     */
+    public List<File> write(ScssStylesheet stylesheet, File file)
+            throws IOException {
+        return write(stylesheet, stylesheet.getChildren(), file);
+    }
+
+    /**
+     * Writes a part of a compiled style sheet (e.g. a bundle) in the formats
+     * of this pipeline.
+     * 
+     * @param stylesheet
+     *            compiled style sheet
+     * @param nodes
+     *            top-level nodes of the style sheet to write
+     * @param file
+     *            file for the expanded CSS, see also
+     *            {@link #getMinifiedFile(File)}
+     * @return the written files, starting with the uncompressed ones
+     * @throws IOException
+     */
+    public List<File> write(ScssStylesheet stylesheet, List<Node> nodes,
+            File file) throws IOException {
+        List<File> files = new ArrayList<File>();
+        List<File> compressedFiles = new ArrayList<File>();
+        List<TimedOutputStream> compression = new ArrayList<TimedOutputStream>();
+        CompilationListener listener = stylesheet.getCompilationListener();
+        Object event = CompilerEvents.get().beginWrite();
+        long start = System.nanoTime();
+        String css = stylesheet.printState(nodes);
+        try {
+            if (expanded) {
+                OutputStream out = open(file, files, compressedFiles,
+                        compression);
+                try {
+                    out.write(css.getBytes("UTF-8"));
+                } finally {
+                    out.close();
+                }
+            }
+            if (minified) {
+                OutputStream out = open(getMinifiedFile(file), files,
+                        compressedFiles, compression);
+                Writer writer = new OutputStreamWriter(out, "UTF-8");
+                try {
+                    new CssCompressor(new StringReader(css)).compress(writer,
+                            -1);
+                } finally {
+                    writer.close();
+                }
+            }
+        } finally {
+            CompilerEvents.get().endWrite(event, minified, css.length());
+        }
+        if (listener != null) {
+            long compressionNanos = 0;
+            for (TimedOutputStream timed : compression) {
+                compressionNanos += timed.nanos;
+            }
+            listener.serializationFinished(minified, css.length(),
+                    System.nanoTime() - start - compressionNanos);
+            if (!compressedFiles.isEmpty()) {
+                long bytes = 0;
+                for (File compressed : compressedFiles) {
+                    bytes += compressed.length();
+                }
+                listener.compressionFinished(bytes, compressionNanos);
+            }
+        }
+        files.addAll(compressedFiles);
+        return files;
+    }
+
+    /**
+     * Opens a tee writing to file and to a compressed variant of it for each
+     * compressor.
+     */
+    private OutputStream open(File file, List<File> files,
+            List<File> compressedFiles, List<TimedOutputStream> compression)
+            throws IOException {
+        List<OutputStream> outputs = new ArrayList<OutputStream>();
+        try {
+            outputs.add(new BufferedOutputStream(new FileOutputStream(file),
+                    bufferSize));
+            files.add(file);
+            for (Compressor compressor : compressors) {
+                File compressedFile = new File(file.getPath()
+                        + compressor.getSuffix());
+                TimedOutputStream timed = new TimedOutputStream(
+                        compressor.compress(new BufferedOutputStream(
+                                new FileOutputStream(compressedFile),
+                                bufferSize)));
+                outputs.add(timed);
+                compression.add(timed);
+                compressedFiles.add(compressedFile);
+            }
+        } catch (IOException e) {
+            try {
+                new TeeOutputStream(outputs).close();
+            } catch (IOException closeException) {
+                // report the original exception
+            }
+            throw e;
+        }
+        return new TeeOutputStream(outputs);
+    }
+
+    /**
+     * Output stream wrapper that measures the time spent in the wrapped
+     * stream.
+     */
+    private static class TimedOutputStream extends FilterOutputStream {
+        private long nanos = 0;
+
+        private TimedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            long start = System.nanoTime();
+            out.close();
+            nanos += System.nanoTime() - start;
+        }
+    }
+}
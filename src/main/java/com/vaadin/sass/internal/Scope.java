@@ -15,10 +15,9 @@
  */
 package com.vaadin.sass.internal;
 
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import com.vaadin.sass.internal.parser.Variable;
 import com.vaadin.sass.internal.tree.FunctionDefNode;
@@ -26,155 +25,212 @@ import com.vaadin.sass.internal.tree.MixinDefNode;
 
 /**
  * Nestable scope for variables, functions and mixins.
+ * 
+ * A scope is a single frame with a pointer to its parent, so opening a scope
+ * only allocates the frame itself. The definitions of a frame are stored in
+ * a small array that is only created when the first local definition is
+ * added and switches to a hash map when it grows. Parent frames are shared by
+ * all their child scopes and lookups walk the chain of frames.
  */
 public class Scope {
 
-    private static class DefinitionScope<T extends Definition> {
-        private DefinitionScope<T> parent;
-        // optimization: create map only when needed
-        private HashMap<String, T> definitions = null;
-        // cached iterable, null when invalid
-        // Note that the set of variables in parent scope is not modified
-        // directly while a child scope is active even though the values of the
-        // variables may change.
-        private Iterable<T> cache = null;
-
-        public DefinitionScope(DefinitionScope<T> parent) {
-            this.parent = parent;
-        }
+    private static final int VARIABLES = 0;
+    private static final int FUNCTIONS = 1;
+    private static final int MIXINS = 2;
 
-        /**
-         * Sets a definition value in the largest scope where it is already
-         * defined. If the variable isn't defined, set it in the current scope.
-         * 
-         * @param node
-         *            definition to set
-         */
-        public void set(T node) {
-            if (parent == null || !parent.setIfPresent(node)) {
-                add(node);
-            }
-            cache = null;
-        }
+    /**
+     * Definitions of one kind in a single frame. Small numbers of definitions
+     * (e.g. function and mixin parameters) are stored in arrays and searched
+     * linearly, larger numbers in a hash map.
+     */
+    private static final class Definitions {
+        private static final int MAX_ARRAY_SIZE = 8;
 
-        /**
-         * Sets a definition in the current scope without checking parent
-         * scopes.
-         * 
-         * @param node
-         *            definition to set
-         */
-        public void add(T node) {
-            getDefinitions(true).put(node.getName(), node);
-            cache = null;
-        }
+        private String[] names = new String[2];
+        private Definition[] values = new Definition[2];
+        private int size = 0;
+        private HashMap<String, Definition> map = null;
 
-        /**
-         * Sets a definition and returns true if it is already defined in the
-         * scope or its parents. Otherwise returns false.
-         * 
-         * @param node
-         *            definition to set
-         * @return true if the definition was set
-         */
-        private boolean setIfPresent(T node) {
-            if (parent != null && parent.setIfPresent(node)) {
-                cache = null;
-                return true;
+        public Definition get(String name) {
+            if (map != null) {
+                return map.get(name);
             }
-            if (getDefinitions(false).containsKey(node.getName())) {
-                getDefinitions(true).put(node.getName(), node);
-                cache = null;
-                return true;
+            for (int i = 0; i < size; i++) {
+                if (names[i].equals(name)) {
+                    return values[i];
+                }
             }
-            return false;
+            return null;
         }
 
-        public T get(String name) {
-            if (getDefinitions(false).containsKey(name)) {
-                return getDefinitions(false).get(name);
-            } else if (parent != null) {
-                return parent.get(name);
-            } else {
-                return null;
+        public boolean contains(String name) {
+            if (map != null) {
+                return map.containsKey(name);
+            }
+            for (int i = 0; i < size; i++) {
+                if (names[i].equals(name)) {
+                    return true;
+                }
             }
+            return false;
         }
 
-        /**
-         * Returns an {@link Iterable} of all variables defined in this scope
-         * and its parents. Variables that are masked by a similarly named copy
-         * in an inner scope are not returned, but only the innermost instance
-         * is used.
-         * 
-         * @return iterable over all definitions in scope, generated iterators
-         *         are unmodifiable
-         */
-        public Iterable<T> getIterable() {
-            if (cache != null) {
-                return cache;
+        public void put(Definition definition) {
+            String name = definition.getName();
+            if (map != null) {
+                map.put(name, definition);
+                return;
             }
-            // no need to copy contents in the top-level scope
-            if (parent == null) {
-                return Collections.unmodifiableCollection(getDefinitions(false)
-                        .values());
+            for (int i = 0; i < size; i++) {
+                if (names[i].equals(name)) {
+                    values[i] = definition;
+                    return;
+                }
             }
-            if (definitions == null) {
-                return parent.getIterable();
+            if (size == MAX_ARRAY_SIZE) {
+                map = new HashMap<String, Definition>();
+                for (int i = 0; i < size; i++) {
+                    map.put(names[i], values[i]);
+                }
+                map.put(name, definition);
+                names = null;
+                values = null;
+                return;
             }
-            // optimize this?
-            LinkedHashMap<String, T> result = new LinkedHashMap<String, T>();
-            addVariablesToMap(result);
-            cache = Collections.unmodifiableCollection(result.values());
-            return cache;
+            if (size == names.length) {
+                String[] newNames = new String[size * 2];
+                Definition[] newValues = new Definition[size * 2];
+                System.arraycopy(names, 0, newNames, 0, size);
+                System.arraycopy(values, 0, newValues, 0, size);
+                names = newNames;
+                values = newValues;
+            }
+            names[size] = name;
+            values[size] = definition;
+            size++;
         }
 
-        private void addVariablesToMap(Map<String, T> map) {
-            // parent first so that this scope can override its variables
-            if (parent != null) {
-                parent.addVariablesToMap(map);
+        public Iterator<Definition> iterator() {
+            if (map != null) {
+                return map.values().iterator();
             }
-            map.putAll(getDefinitions(false));
+            return new Iterator<Definition>() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < size;
+                }
+
+                @Override
+                public Definition next() {
+                    if (index >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    return values[index++];
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
         }
 
         @Override
         public String toString() {
-            if (definitions != null) {
-                return getDefinitions(false).keySet().toString()
-                        + ", parent = " + parent;
-            } else {
-                return "{}, parent = " + parent;
+            if (map != null) {
+                return map.keySet().toString();
             }
+            StringBuilder result = new StringBuilder("[");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    result.append(", ");
+                }
+                result.append(names[i]);
+            }
+            return result.append("]").toString();
         }
+    }
 
-        private Map<String, T> getDefinitions(boolean create) {
-            if (create && definitions == null) {
-                definitions = new HashMap<String, T>();
-            }
-            if (definitions != null) {
-                return definitions;
-            } else {
-                return Collections.emptyMap();
-            }
+    /**
+     * Unmodifiable view of the definitions of one kind visible in a scope.
+     * Frames are visited from the outermost to the innermost one and
+     * definitions masked by a definition with the same name in an inner frame
+     * are skipped. Nothing is copied.
+     */
+    private static final class VisibleDefinitions<T extends Definition>
+            implements Iterable<T> {
+        private final Scope scope;
+        private final int kind;
+
+        public VisibleDefinitions(Scope scope, int kind) {
+            this.scope = scope;
+            this.kind = kind;
         }
 
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                // frame whose definitions are being iterated
+                private Scope frame = scope.getOutermostFrame(kind, null);
+                private Iterator<Definition> current = frame == null ? null
+                        : frame.getDefinitions(kind).iterator();
+                private Definition next = advance();
+
+                private Definition advance() {
+                    while (current != null) {
+                        while (current.hasNext()) {
+                            Definition definition = current.next();
+                            if (!scope.isMasked(definition.getName(), kind,
+                                    frame)) {
+                                return definition;
+                            }
+                        }
+                        frame = scope.getOutermostFrame(kind, frame);
+                        current = frame == null ? null : frame
+                                .getDefinitions(kind).iterator();
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    T result = (T) next;
+                    next = advance();
+                    return result;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
     }
 
-    private Scope parent;
-    private DefinitionScope<Variable> variables;
-    private DefinitionScope<FunctionDefNode> functions;
-    private DefinitionScope<MixinDefNode> mixins;
+    private final Scope parent;
+    private final int depth;
+    // optimization: create definition storage only when needed
+    private Definitions[] definitions = null;
 
     public Scope() {
-        variables = new DefinitionScope<Variable>(null);
-        functions = new DefinitionScope<FunctionDefNode>(null);
-        mixins = new DefinitionScope<MixinDefNode>(null);
+        parent = null;
+        depth = 0;
     }
 
     public Scope(Scope parent) {
         this.parent = parent;
-        variables = new DefinitionScope<Variable>(parent.variables);
-        functions = new DefinitionScope<FunctionDefNode>(parent.functions);
-        mixins = new DefinitionScope<MixinDefNode>(parent.mixins);
+        depth = parent.depth + 1;
     }
 
     public Scope getParent() {
@@ -189,7 +245,7 @@ public class Scope {
      *            variable to set
      */
     public void setVariable(Variable node) {
-        variables.set(node);
+        set(VARIABLES, node);
     }
 
     /**
@@ -199,11 +255,11 @@ public class Scope {
      *            variable to set
      */
     public void addVariable(Variable node) {
-        variables.add(node);
+        getOrCreateDefinitions(VARIABLES).put(node);
     }
 
     public Variable getVariable(String name) {
-        return variables.get(name);
+        return (Variable) get(VARIABLES, name);
     }
 
     /**
@@ -211,33 +267,139 @@ public class Scope {
      * its parents. Variables that are masked by a similarly named copy in an
      * inner scope are not returned, but only the innermost instance is used.
      * 
+     * The returned view is not a copy: definitions added while iterating may
+     * or may not be visible.
+     * 
      * @return iterable over all variables in scope, generated iterators are
      *         unmodifiable
      */
     public Iterable<Variable> getVariables() {
-        return variables.getIterable();
+        return new VisibleDefinitions<Variable>(this, VARIABLES);
+    }
+
+    /**
+     * Returns an {@link Iterable} of all functions defined in this scope and
+     * its parents. See {@link #getVariables()}.
+     * 
+     * @return iterable over all functions in scope
+     */
+    public Iterable<FunctionDefNode> getFunctions() {
+        return new VisibleDefinitions<FunctionDefNode>(this, FUNCTIONS);
+    }
+
+    /**
+     * Returns an {@link Iterable} of all mixins defined in this scope and its
+     * parents. See {@link #getVariables()}.
+     * 
+     * @return iterable over all mixins in scope
+     */
+    public Iterable<MixinDefNode> getMixins() {
+        return new VisibleDefinitions<MixinDefNode>(this, MIXINS);
     }
 
     public void defineFunction(FunctionDefNode function) {
-        functions.add(function);
+        getOrCreateDefinitions(FUNCTIONS).put(function);
     }
 
     public void defineMixin(MixinDefNode mixin) {
-        mixins.add(mixin);
+        getOrCreateDefinitions(MIXINS).put(mixin);
     }
 
     public FunctionDefNode getFunctionDefinition(String name) {
-        return functions.get(name);
+        return (FunctionDefNode) get(FUNCTIONS, name);
     }
 
     public MixinDefNode getMixinDefinition(String name) {
-        return mixins.get(name);
+        return (MixinDefNode) get(MIXINS, name);
+    }
+
+    private Definition get(int kind, String name) {
+        for (Scope frame = this; frame != null; frame = frame.parent) {
+            Definitions defs = frame.getDefinitions(kind);
+            if (defs != null) {
+                Definition definition = defs.get(name);
+                if (definition != null) {
+                    return definition;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets a definition value in the largest scope where it is already
+     * defined. If the definition doesn't exist, set it in the current scope.
+     */
+    private void set(int kind, Definition node) {
+        Scope target = this;
+        for (Scope frame = parent; frame != null; frame = frame.parent) {
+            Definitions defs = frame.getDefinitions(kind);
+            if (defs != null && defs.contains(node.getName())) {
+                target = frame;
+            }
+        }
+        target.getOrCreateDefinitions(kind).put(node);
+    }
+
+    /**
+     * Returns true if a definition with the given name exists in a frame
+     * between this scope (inclusive) and the given frame (exclusive).
+     */
+    private boolean isMasked(String name, int kind, Scope frame) {
+        for (Scope inner = this; inner != frame; inner = inner.parent) {
+            Definitions defs = inner.getDefinitions(kind);
+            if (defs != null && defs.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the outermost frame in the chain of this scope that is inside
+     * the given frame and has definitions of the given kind.
+     * 
+     * @param kind
+     *            definition kind
+     * @param outer
+     *            frame to stay inside of, null for no limit
+     * @return frame or null if there are no more frames with definitions
+     */
+    private Scope getOutermostFrame(int kind, Scope outer) {
+        Scope result = null;
+        int limit = outer == null ? -1 : outer.depth;
+        for (Scope frame = this; frame != null && frame.depth > limit; frame = frame.parent) {
+            if (frame.getDefinitions(kind) != null) {
+                result = frame;
+            }
+        }
+        return result;
+    }
+
+    private Definitions getDefinitions(int kind) {
+        return definitions == null ? null : definitions[kind];
+    }
+
+    private Definitions getOrCreateDefinitions(int kind) {
+        if (definitions == null) {
+            definitions = new Definitions[3];
+        }
+        if (definitions[kind] == null) {
+            definitions[kind] = new Definitions();
+        }
+        return definitions[kind];
     }
 
     @Override
     public String toString() {
-        return "Variables: " + variables.toString() + "\nFunctions: "
-                + functions.toString() + "\nMixins: " + mixins.toString();
+        return "Variables: " + toString(VARIABLES) + "\nFunctions: "
+                + toString(FUNCTIONS) + "\nMixins: " + toString(MIXINS);
+    }
+
+    private String toString(int kind) {
+        Definitions defs = getDefinitions(kind);
+        return (defs != null ? defs.toString() : "{}") + ", parent = "
+                + (parent != null ? parent.toString(kind) : "null");
     }
 
 }
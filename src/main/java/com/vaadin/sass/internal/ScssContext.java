@@ -20,6 +20,8 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 import com.vaadin.sass.internal.parser.Variable;
+import com.vaadin.sass.internal.selector.SelectorInterner;
+import com.vaadin.sass.internal.selector.SelectorWhitelist;
 import com.vaadin.sass.internal.tree.FunctionDefNode;
 import com.vaadin.sass.internal.tree.MixinDefNode;
 import com.vaadin.sass.internal.visitor.Extension;
@@ -58,6 +60,24 @@ public class ScssContext {
      */
     private Set<Extension> extendsSet = new LinkedHashSet<Extension>();
 
+    // optional cache for parsed imports, shared between compilations
+    private StylesheetCache stylesheetCache;
+
+    // optional profiler for mixin and function calls
+    private DefinitionProfiler definitionProfiler;
+
+    // canonical instances of the selectors of this compilation
+    private final SelectorInterner selectorInterner = new SelectorInterner();
+
+    // whether to merge @media blocks with identical queries in the output
+    private boolean mergeMediaBlocks = false;
+
+    // whether to remove duplicate declarations and merge identical blocks
+    private boolean mergeDuplicateRules = false;
+
+    // optional set of used class names etc. for removing unused selectors
+    private SelectorWhitelist selectorWhitelist;
+
     public ScssContext() {
         this(UrlMode.MIXED);
     }
@@ -184,4 +204,122 @@ public class ScssContext {
         this.urlMode = urlMode;
     }
 
+    /**
+     * Returns the cache used for parsed imported style sheets.
+     * 
+     * @return style sheet cache or null if imports are parsed separately for
+     *         each compilation
+     */
+    public StylesheetCache getStylesheetCache() {
+        return stylesheetCache;
+    }
+
+    /**
+     * Sets the cache to use for parsed imported style sheets. The same cache
+     * can be shared by several compilations.
+     * 
+     * @param stylesheetCache
+     *            style sheet cache or null to not cache imports
+     */
+    public void setStylesheetCache(StylesheetCache stylesheetCache) {
+        this.stylesheetCache = stylesheetCache;
+    }
+
+    /**
+     * Returns the profiler that collects statistics of mixin and function
+     * calls.
+     * 
+     * @return definition profiler or null if profiling is disabled
+     */
+    public DefinitionProfiler getDefinitionProfiler() {
+        return definitionProfiler;
+    }
+
+    /**
+     * Sets the profiler that collects statistics of mixin and function calls
+     * during the compilation.
+     * 
+     * @param definitionProfiler
+     *            definition profiler or null to disable profiling
+     */
+    public void setDefinitionProfiler(DefinitionProfiler definitionProfiler) {
+        this.definitionProfiler = definitionProfiler;
+    }
+
+    /**
+     * Returns the table of canonical selector instances of this compilation.
+     * 
+     * @return selector interner
+     */
+    public SelectorInterner getSelectorInterner() {
+        return selectorInterner;
+    }
+
+    /**
+     * Returns whether @media blocks with identical media queries are merged
+     * after compilation.
+     * 
+     * @return true to merge @media blocks
+     */
+    public boolean isMergeMediaBlocks() {
+        return mergeMediaBlocks;
+    }
+
+    /**
+     * Sets whether @media blocks with identical media queries are merged after
+     * compilation to reduce the size of the output. The default is false.
+     * 
+     * @param mergeMediaBlocks
+     *            true to merge @media blocks
+     */
+    public void setMergeMediaBlocks(boolean mergeMediaBlocks) {
+        this.mergeMediaBlocks = mergeMediaBlocks;
+    }
+
+    /**
+     * Returns whether duplicate declarations and rule blocks are merged after
+     * compilation.
+     * 
+     * @return true to merge duplicate rules
+     */
+    public boolean isMergeDuplicateRules() {
+        return mergeDuplicateRules;
+    }
+
+    /**
+     * Sets whether overridden declarations are removed, adjacent rule blocks
+     * with identical declarations are merged and empty blocks are removed
+     * after compilation to reduce the size of the output. The default is
+     * false.
+     * 
+     * @param mergeDuplicateRules
+     *            true to merge duplicate rules
+     */
+    public void setMergeDuplicateRules(boolean mergeDuplicateRules) {
+        this.mergeDuplicateRules = mergeDuplicateRules;
+    }
+
+    /**
+     * Returns the whitelist used for removing unused selectors after
+     * compilation.
+     * 
+     * @return selector whitelist or null if no selectors are removed
+     */
+    public SelectorWhitelist getSelectorWhitelist() {
+        return selectorWhitelist;
+    }
+
+    /**
+     * Sets the class names, ids and element names used by the application.
+     * Selectors that cannot match any element of the application are removed
+     * after compilation, as are the blocks and @media blocks that become
+     * empty.
+     * 
+     * @param selectorWhitelist
+     *            selector whitelist or null to keep all selectors (default)
+     */
+    public void setSelectorWhitelist(SelectorWhitelist selectorWhitelist) {
+        this.selectorWhitelist = selectorWhitelist;
+    }
+
 }
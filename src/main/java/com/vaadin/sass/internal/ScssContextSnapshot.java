@@ -0,0 +1,186 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.vaadin.sass.internal.parser.Variable;
+import com.vaadin.sass.internal.tree.FunctionDefNode;
+import com.vaadin.sass.internal.tree.MixinDefNode;
+import com.vaadin.sass.internal.tree.Node;
+import com.vaadin.sass.internal.visitor.Extension;
+
+/**
+ * Immutable snapshot of the compilation context after traversing a common
+ * prelude, e.g. <code>@import "../valo/valo";</code>, that mostly defines
+ * variables, mixins and functions. Style sheets beginning with the same
+ * prelude can be compiled with {@link ScssStylesheet#compile(ScssContextSnapshot)}
+ * , which starts from a fork of the snapshot instead of traversing the
+ * prelude again.
+ * 
+ * A snapshot can be shared by several threads compiling style sheets at the
+ * same time.
+ * 
+ * @author Vaadin Ltd
+ */
+public final class ScssContextSnapshot {
+
+    private final ScssContext.UrlMode urlMode;
+
+    private final String directory;
+
+    // printed form of the prelude nodes before traversal, used to recognize
+    // the prelude in other style sheets
+    private final List<String> prelude;
+
+    // templates - copied for each fork, never traversed again
+    private final List<Node> nodes;
+    private final List<Variable> variables;
+    private final List<FunctionDefNode> functions;
+    private final List<MixinDefNode> mixins;
+    private final List<Extension> extensions;
+    private final List<String> sourceUris;
+
+    private ScssContextSnapshot(ScssStylesheet prelude,
+            ScssContext.UrlMode urlMode) {
+        this.urlMode = urlMode;
+        directory = prelude.getDirectory();
+        List<String> printed = new ArrayList<String>();
+        for (Node node : prelude.getChildren()) {
+            printed.add(node.printState());
+        }
+        this.prelude = Collections.unmodifiableList(printed);
+
+        ScssContext context = new ScssContext(urlMode);
+        prelude.traverseInCurrentScope(context);
+
+        Scope scope = context.getCurrentScope();
+        nodes = copyList(prelude.getChildren());
+        variables = copyList(scope.getVariables());
+        functions = copyList(scope.getFunctions());
+        mixins = copyList(scope.getMixins());
+        extensions = copyList(context.getExtensions());
+        sourceUris = copyList(prelude.getSourceUris());
+    }
+
+    /**
+     * Traverses a prelude style sheet and captures the resulting compilation
+     * context. The prelude style sheet is modified by the traversal and
+     * should not be used afterwards.
+     * 
+     * @param prelude
+     *            parsed prelude style sheet, located in the same directory as
+     *            the style sheets to compile with the snapshot
+     * @param urlMode
+     *            url mode for the prelude and all the style sheets compiled
+     *            with the snapshot
+     * @return snapshot of the context after the prelude
+     */
+    public static ScssContextSnapshot create(ScssStylesheet prelude,
+            ScssContext.UrlMode urlMode) {
+        return new ScssContextSnapshot(prelude, urlMode);
+    }
+
+    public ScssContext.UrlMode getUrlMode() {
+        return urlMode;
+    }
+
+    /**
+     * Returns the number of leading child nodes of a style sheet that form
+     * the prelude of this snapshot.
+     * 
+     * @param stylesheet
+     *            parsed style sheet
+     * @return number of prelude nodes or -1 if the style sheet does not begin
+     *         with the prelude or is not located in the same directory
+     */
+    public int getPreludeLength(ScssStylesheet stylesheet) {
+        String otherDirectory = stylesheet.getDirectory();
+        if (directory == null ? otherDirectory != null : !directory
+                .equals(otherDirectory)) {
+            return -1;
+        }
+        List<Node> children = stylesheet.getChildren();
+        if (children.size() < prelude.size()) {
+            return -1;
+        }
+        for (int i = 0; i < prelude.size(); i++) {
+            if (!prelude.get(i).equals(children.get(i).printState())) {
+                return -1;
+            }
+        }
+        return prelude.size();
+    }
+
+    /**
+     * Creates a new compilation context with the variables, functions, mixins
+     * and extensions of the snapshot. Modifications of the returned context
+     * do not affect the snapshot.
+     * 
+     * @return new compilation context
+     */
+    public ScssContext fork() {
+        ScssContext context = new ScssContext(urlMode);
+        for (Variable variable : variables) {
+            // variables are not modified after having been set
+            context.addVariable(variable);
+        }
+        // the definitions must see the variables of the new context, so
+        // redefine copies of them in it
+        for (FunctionDefNode function : functions) {
+            function.copy().traverse(context);
+        }
+        for (MixinDefNode mixin : mixins) {
+            mixin.copy().traverse(context);
+        }
+        for (Extension extension : extensions) {
+            context.addExtension(extension);
+        }
+        return context;
+    }
+
+    /**
+     * Returns copies of the nodes generated by the prelude, typically none.
+     * 
+     * @return new list of nodes without a parent
+     */
+    public List<Node> copyNodes() {
+        List<Node> result = new ArrayList<Node>(nodes.size());
+        for (Node node : nodes) {
+            result.add(node.copy());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the URIs of the style sheets that form the prelude.
+     * 
+     * @return unmodifiable list of source URIs
+     */
+    public List<String> getSourceUris() {
+        return sourceUris;
+    }
+
+    private static <T> List<T> copyList(Iterable<T> items) {
+        List<T> result = new ArrayList<T>();
+        for (T item : items) {
+            result.add(item);
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
@@ -20,11 +20,16 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
@@ -40,14 +45,32 @@ import com.vaadin.sass.internal.parser.Parser;
 import com.vaadin.sass.internal.parser.SCSSParseException;
 import com.vaadin.sass.internal.resolver.ClassloaderResolver;
 import com.vaadin.sass.internal.resolver.FilesystemResolver;
+import com.vaadin.sass.internal.resolver.InMemoryResolver;
 import com.vaadin.sass.internal.resolver.ScssStylesheetResolver;
+import com.vaadin.sass.internal.selector.SelectorWhitelist;
 import com.vaadin.sass.internal.tree.Node;
+import com.vaadin.sass.internal.util.CountingInputStream;
+import com.vaadin.sass.internal.util.CountingReader;
 import com.vaadin.sass.internal.visitor.ExtendNodeHandler;
+import com.vaadin.sass.internal.visitor.MediaMergeHandler;
+import com.vaadin.sass.internal.visitor.RuleMergeHandler;
+import com.vaadin.sass.internal.visitor.SelectorPurgeHandler;
 
 public class ScssStylesheet extends Node {
 
     private static final long serialVersionUID = 3849790204404961608L;
 
+    /**
+     * System property for keeping the java.util.logging configuration of the
+     * application instead of replacing it with the logging.properties of the
+     * compiler when the first style sheet is created. The configuration is
+     * also kept if the system property java.util.logging.config.file is set.
+     */
+    public static final String KEEP_LOGGING_CONFIGURATION_PROPERTY = "vaadin.sass.logging.keep";
+
+    // charset used when no @charset declaration is present
+    private static final String DEFAULT_CHARSET = "ASCII";
+
     private File file;
 
     private String charset;
@@ -59,6 +82,11 @@ public class ScssStylesheet extends Node {
 
     private List<String> sourceUris = new ArrayList<String>();
 
+    private CompilationListener compilationListener;
+
+    // top-level @import (uri) that each top-level output node came from
+    private transient Map<Node, String> importOrigins;
+
     /**
      * Read in a file SCSS and parse it into a ScssStylesheet
      * 
@@ -67,6 +95,18 @@ public class ScssStylesheet extends Node {
      */
     public ScssStylesheet() {
         super();
+        LoggingConfiguration.init();
+    }
+
+    // for use by copy() only
+    private ScssStylesheet(ScssStylesheet stylesheet) {
+        super(stylesheet);
+        file = stylesheet.file;
+        charset = stylesheet.charset;
+        resolvers = new ArrayList<ScssStylesheetResolver>(stylesheet.resolvers);
+        prefix = stylesheet.prefix;
+        sourceUris = new ArrayList<String>(stylesheet.sourceUris);
+        compilationListener = stylesheet.compilationListener;
     }
 
     /**
@@ -129,6 +169,39 @@ public class ScssStylesheet extends Node {
             ScssStylesheet parentStylesheet,
             SCSSDocumentHandler documentHandler, SCSSErrorHandler errorHandler)
             throws CSSException, IOException {
+        return get(identifier, parentStylesheet, documentHandler,
+                errorHandler,
+                parentStylesheet != null ? parentStylesheet
+                        .getCompilationListener() : null);
+    }
+
+    /**
+     * Main entry point for the SASS compiler with a
+     * {@link CompilationListener} that receives the timings of the
+     * compilation, including resolving and parsing this style sheet. See
+     * {@link #get(String, ScssStylesheet, SCSSDocumentHandler, SCSSErrorHandler)}
+     * .
+     * 
+     * @param identifier
+     *            The file path. If null then null is returned.
+     * @param parentStylesheet
+     *            Style sheet from which to inherit resolvers and encoding. May
+     *            be null.
+     * @param documentHandler
+     *            Instance of document handler. May not be null.
+     * @param errorHandler
+     *            Instance of error handler. May not be null.
+     * @param listener
+     *            Listener for compilation timings. May be null.
+     * @return
+     * @throws CSSException
+     * @throws IOException
+     */
+    public static ScssStylesheet get(String identifier,
+            ScssStylesheet parentStylesheet,
+            SCSSDocumentHandler documentHandler,
+            SCSSErrorHandler errorHandler, CompilationListener listener)
+            throws CSSException, IOException {
         SCSSErrorHandler.set(errorHandler);
         /*
          * The encoding to be used is passed through "encoding" parameter. the
@@ -143,10 +216,6 @@ public class ScssStylesheet extends Node {
             return null;
         }
 
-        // FIXME Is this actually intended? /John 1.3.2013
-        File file = new File(identifier);
-        file = file.getCanonicalFile();
-
         ScssStylesheet stylesheet = documentHandler.getStyleSheet();
         if (parentStylesheet == null) {
             // Use default resolvers
@@ -156,18 +225,156 @@ public class ScssStylesheet extends Node {
             // Use parent resolvers
             stylesheet.setResolvers(parentStylesheet.getResolvers());
         }
+        stylesheet.setCompilationListener(listener);
+        long start = listener != null ? System.nanoTime() : 0;
         InputSource source = stylesheet.resolveStylesheet(identifier,
                 parentStylesheet);
         if (source == null) {
             return null;
         }
+        if (listener != null) {
+            listener.stylesheetResolved(identifier, source.getURI(),
+                    System.nanoTime() - start);
+        }
         if (parentStylesheet != null) {
             source.setEncoding(parentStylesheet.getCharset());
         }
+        parse(stylesheet, identifier, source, documentHandler, errorHandler);
+        return stylesheet;
+    }
+
+    /**
+     * Builds up a ScssStylesheet tree out of SCSS source code given as a
+     * string. The identifier is only used as a virtual file name: it is not
+     * required to exist on disk, but imports are resolved relative to its
+     * directory.
+     * 
+     * @param identifier
+     *            Virtual path of the style sheet, e.g. "tenant/styles.scss"
+     * @param scss
+     *            The SCSS source code
+     * @return the parsed style sheet
+     * @throws CSSException
+     * @throws IOException
+     */
+    public static ScssStylesheet getFromString(String identifier, String scss)
+            throws CSSException, IOException {
+        return getFromReader(identifier, new StringReader(scss));
+    }
+
+    /**
+     * Builds up a ScssStylesheet tree out of SCSS source code read from a
+     * reader. See {@link #getFromString(String, String)}.
+     * 
+     * @param identifier
+     *            Virtual path of the style sheet
+     * @param reader
+     *            Reader providing the SCSS source code
+     * @return the parsed style sheet
+     * @throws CSSException
+     * @throws IOException
+     */
+    public static ScssStylesheet getFromReader(String identifier,
+            Reader reader) throws CSSException, IOException {
+        InputSource source = new InputSource(reader);
+        source.setEncoding(DEFAULT_CHARSET);
+        return getFromSource(identifier, source,
+                new SCSSDocumentHandlerImpl(), new SCSSErrorHandler());
+    }
+
+    /**
+     * Builds up a ScssStylesheet tree out of encoded SCSS source code in a
+     * byte buffer. The encoding is determined by a possible @charset
+     * declaration as for files. The buffer is not copied if it is backed by
+     * an accessible array. See {@link #getFromString(String, String)}.
+     * 
+     * @param identifier
+     *            Virtual path of the style sheet
+     * @param buffer
+     *            Buffer containing the SCSS source code between its position
+     *            and limit
+     * @return the parsed style sheet
+     * @throws CSSException
+     * @throws IOException
+     */
+    public static ScssStylesheet getFromByteBuffer(String identifier,
+            ByteBuffer buffer) throws CSSException, IOException {
+        ByteArrayInputStream stream;
+        if (buffer.hasArray()) {
+            stream = new ByteArrayInputStream(buffer.array(),
+                    buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining());
+        } else {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            stream = new ByteArrayInputStream(bytes);
+        }
+        InputSource source = new InputSource();
+        source.setByteStream(stream);
+        return getFromSource(identifier, source,
+                new SCSSDocumentHandlerImpl(), new SCSSErrorHandler());
+    }
+
+    /**
+     * Builds up a ScssStylesheet tree out of an already opened input source
+     * without resolving the identifier. The default resolvers are used for
+     * imports; they can be replaced with {@link #setResolvers(List)} before
+     * compiling, e.g. to use an {@link InMemoryResolver} for virtual
+     * partials.
+     * 
+     * @param identifier
+     *            Virtual path of the style sheet. May not be null.
+     * @param source
+     *            Input source with a character or byte stream
+     * @param documentHandler
+     *            Instance of document handler. May not be null.
+     * @param errorHandler
+     *            Instance of error handler. May not be null.
+     * @return the parsed style sheet
+     * @throws CSSException
+     * @throws IOException
+     */
+    public static ScssStylesheet getFromSource(String identifier,
+            InputSource source, SCSSDocumentHandler documentHandler,
+            SCSSErrorHandler errorHandler) throws CSSException, IOException {
+        SCSSErrorHandler.set(errorHandler);
+
+        ScssStylesheet stylesheet = documentHandler.getStyleSheet();
+        stylesheet.addResolver(new FilesystemResolver());
+        stylesheet.addResolver(new ClassloaderResolver());
+        if (source.getURI() == null) {
+            source.setURI(identifier);
+        }
+        stylesheet.setFile(new File(identifier));
+        parse(stylesheet, identifier, source, documentHandler, errorHandler);
+        return stylesheet;
+    }
+
+    private static void parse(ScssStylesheet stylesheet, String identifier,
+            InputSource source, SCSSDocumentHandler documentHandler,
+            SCSSErrorHandler errorHandler) throws CSSException, IOException {
         Parser parser = new Parser();
         parser.setErrorHandler(errorHandler);
         parser.setDocumentHandler(documentHandler);
 
+        CompilationListener listener = stylesheet.getCompilationListener();
+        Object event = CompilerEvents.get().beginParse();
+        CountingInputStream countingStream = null;
+        CountingReader countingReader = null;
+        long start = 0;
+        if (listener != null || event != null) {
+            if (source.getCharacterStream() != null) {
+                countingReader = new CountingReader(
+                        source.getCharacterStream());
+                source.setCharacterStream(countingReader);
+            } else if (source.getByteStream() != null) {
+                countingStream = new CountingInputStream(
+                        source.getByteStream());
+                source.setByteStream(countingStream);
+            }
+            start = System.nanoTime();
+        }
+
         try {
             parser.parseStyleSheet(source);
         } catch (ParseException e) {
@@ -176,16 +383,31 @@ public class ScssStylesheet extends Node {
             throw new SCSSParseException(e, identifier);
         }
 
-        stylesheet.setCharset(parser.getInputSource().getEncoding());
+        String charset = parser.getInputSource().getEncoding();
+        stylesheet.setCharset(charset != null ? charset : DEFAULT_CHARSET);
         stylesheet.sourceUris.add(source.getURI());
 
-        return stylesheet;
+        if (listener != null || event != null) {
+            long nanos = System.nanoTime() - start;
+            long bytes = countingStream != null ? countingStream.getCount()
+                    : (countingReader != null ? countingReader.getCount() : -1);
+            CompilerEvents.get().endParse(event, source.getURI(), bytes);
+            if (listener != null) {
+                listener.stylesheetParsed(source.getURI(), bytes, nanos);
+            }
+        }
     }
 
     public InputSource resolveStylesheet(String identifier,
             ScssStylesheet parentStylesheet) {
+        CompilerEvents events = CompilerEvents.get();
         for (ScssStylesheetResolver resolver : getResolvers()) {
+            Object event = events.beginResolve();
             InputSource source = resolver.resolve(parentStylesheet, identifier);
+            if (event != null) {
+                events.endResolve(event, resolver.getClass().getName(),
+                        identifier, source != null ? source.getURI() : null);
+            }
             if (source != null) {
                 File f = new File(source.getURI());
                 setFile(f);
@@ -233,6 +455,38 @@ public class ScssStylesheet extends Node {
         sourceUris.addAll(uris);
     }
 
+    /**
+     * Records the top-level @import of this style sheet that the given output
+     * nodes came from, including nodes from nested imports. This is called
+     * when traversing the imports.
+     * 
+     * @param nodes
+     *            output nodes of the import
+     * @param uri
+     *            imported path as written in the @import
+     */
+    public void setImportOrigin(Collection<Node> nodes, String uri) {
+        if (importOrigins == null) {
+            importOrigins = new IdentityHashMap<Node, String>();
+        }
+        for (Node node : nodes) {
+            importOrigins.put(node, uri);
+        }
+    }
+
+    /**
+     * Returns the top-level @import of this style sheet that a top-level node
+     * of the compiled style sheet came from.
+     * 
+     * @param node
+     *            top-level node of the compiled style sheet
+     * @return imported path as written in the @import or null if the node came
+     *         from this style sheet itself
+     */
+    public String getImportOrigin(Node node) {
+        return importOrigins != null ? importOrigins.get(node) : null;
+    }
+
     /**
      * Applies all the visitors and compiles SCSS into Css.
      * 
@@ -263,9 +517,131 @@ public class ScssStylesheet extends Node {
      * @throws Exception
      */
     public void compile(ScssContext.UrlMode urlMode) throws Exception {
-        ScssContext context = new ScssContext(urlMode);
+        compile(new ScssContext(urlMode));
+    }
+
+    /**
+     * Applies all the visitors and compiles SCSS into Css using the given
+     * compilation context. This can be used e.g. to share a
+     * {@link StylesheetCache} between compilations.
+     * 
+     * @param context
+     *            a new compilation context
+     * @throws Exception
+     */
+    public void compile(ScssContext context) throws Exception {
+        CompilationListener listener = getCompilationListener();
+        if (listener == null) {
+            traverse(context);
+            ExtendNodeHandler.modifyTree(context, this);
+            optimize(context);
+            return;
+        }
+        long start = System.nanoTime();
         traverse(context);
+        long traversed = System.nanoTime();
+        listener.traversalFinished(traversed - start);
         ExtendNodeHandler.modifyTree(context, this);
+        listener.extendFinished(System.nanoTime() - traversed);
+        optimize(context);
+    }
+
+    /**
+     * Compiles SCSS into Css starting from a snapshot of the compilation
+     * context. The style sheet must begin with the prelude from which the
+     * snapshot was created; the prelude nodes are skipped and replaced with
+     * the output of the prelude in the snapshot.
+     * 
+     * @param snapshot
+     *            snapshot of the context after the prelude
+     * @throws Exception
+     */
+    public void compile(ScssContextSnapshot snapshot) throws Exception {
+        int preludeLength = snapshot.getPreludeLength(this);
+        if (preludeLength < 0) {
+            throw new IllegalArgumentException(
+                    "The style sheet does not begin with the prelude of the snapshot");
+        }
+        List<Node> prelude = getChildren().subList(0, preludeLength);
+        for (Node node : prelude) {
+            replaceNode(node, Collections.<Node> emptyList());
+        }
+        CompilationListener listener = getCompilationListener();
+        long start = listener != null ? System.nanoTime() : 0;
+        ScssContext context = snapshot.fork();
+        // the snapshot definitions are in the top-level scope of the
+        // context, and must see the top-level variables of this style sheet
+        traverseInCurrentScope(context);
+        prependChildren(snapshot.copyNodes());
+        addSourceUris(snapshot.getSourceUris());
+        long traversed = listener != null ? System.nanoTime() : 0;
+        if (listener != null) {
+            listener.traversalFinished(traversed - start);
+        }
+        ExtendNodeHandler.modifyTree(context, this);
+        if (listener != null) {
+            listener.extendFinished(System.nanoTime() - traversed);
+        }
+        optimize(context);
+    }
+
+    /**
+     * Applies the output optimizations enabled in the context to the compiled
+     * node tree.
+     */
+    private void optimize(ScssContext context) {
+        CompilationListener listener = getCompilationListener();
+        SelectorWhitelist whitelist = context.getSelectorWhitelist();
+        if (whitelist != null) {
+            long start = System.nanoTime();
+            long saved = SelectorPurgeHandler.purge(this, whitelist);
+            if (listener != null) {
+                listener.optimizationFinished("purge", saved,
+                        System.nanoTime() - start);
+            }
+        }
+        if (context.isMergeMediaBlocks()) {
+            long start = System.nanoTime();
+            long saved = MediaMergeHandler.mergeMediaBlocks(this);
+            if (listener != null) {
+                listener.optimizationFinished("merge-media", saved,
+                        System.nanoTime() - start);
+            }
+        }
+        if (context.isMergeDuplicateRules()) {
+            long start = System.nanoTime();
+            long saved = RuleMergeHandler.mergeDuplicates(this);
+            if (listener != null) {
+                listener.optimizationFinished("merge-rules", saved,
+                        System.nanoTime() - start);
+            }
+        }
+    }
+
+    void traverseInCurrentScope(ScssContext context) {
+        traverseChildren(context, false);
+    }
+
+    /**
+     * Inserts nodes at the beginning of the child list of the style sheet.
+     * 
+     * @param nodes
+     *            nodes to insert
+     */
+    void prependChildren(List<Node> nodes) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        if (getChildren().isEmpty()) {
+            for (Node node : nodes) {
+                appendChild(node);
+            }
+        } else {
+            Node first = getChildren().get(0);
+            List<Node> newNodes = new ArrayList<Node>(nodes);
+            newNodes.add(first);
+            replaceNode(first, newNodes);
+        }
     }
 
     /**
@@ -280,6 +656,18 @@ public class ScssStylesheet extends Node {
         return buildString(PRINT_STRATEGY);
     }
 
+    /**
+     * Prints a part of the compiled style sheet, e.g. one of several output
+     * bundles, with the charset declaration of this style sheet.
+     * 
+     * @param nodes
+     *            top-level nodes of this style sheet to print
+     * @return CSS for the nodes
+     */
+    public String printState(List<Node> nodes) {
+        return buildString(PRINT_STRATEGY, nodes);
+    }
+
     @Override
     public String toString() {
         return "Stylesheet node [" + buildString(TO_STRING_STRATEGY) + "]";
@@ -341,15 +729,41 @@ public class ScssStylesheet extends Node {
         this.prefix = prefix;
     }
 
+    /**
+     * Returns the listener that receives the timings of compiling this style
+     * sheet.
+     * 
+     * @return compilation listener or null if none
+     */
+    public CompilationListener getCompilationListener() {
+        return compilationListener;
+    }
+
+    /**
+     * Sets the listener that receives the timings of compiling and writing
+     * this style sheet. Imported style sheets inherit the listener.
+     * 
+     * @param compilationListener
+     *            compilation listener or null to disable
+     */
+    public void setCompilationListener(
+            CompilationListener compilationListener) {
+        this.compilationListener = compilationListener;
+    }
+
     private String buildString(BuildStringStrategy strategy) {
+        return buildString(strategy, getChildren());
+    }
+
+    private String buildString(BuildStringStrategy strategy,
+            List<Node> children) {
         StringBuilder string = new StringBuilder("");
         String delimeter = "\n\n";
         // add charset declaration, if it is not default "ASCII".
-        if (!"ASCII".equals(getCharset())) {
+        if (!DEFAULT_CHARSET.equals(getCharset())) {
             string.append("@charset \"").append(getCharset()).append("\";")
                     .append(delimeter);
         }
-        List<Node> children = getChildren();
         if (children.size() > 0) {
             string.append(strategy.build(children.get(0)));
         }
@@ -365,25 +779,41 @@ public class ScssStylesheet extends Node {
         return output;
     }
 
-    static {
-        String logFile = System.getProperty("java.util.logging.config.file");
-        if (logFile == null) {
-            try {
-                LogManager.getLogManager().readConfiguration(
-                        ScssStylesheet.class
-                                .getResourceAsStream("/logging.properties"));
-            } catch (SecurityException e) {
-                e.printStackTrace();
-            } catch (IOException e) {
-                e.printStackTrace();
+    // configures logging once, on first use rather than when loaded
+    private static class LoggingConfiguration {
+        static {
+            String logFile = System
+                    .getProperty("java.util.logging.config.file");
+            if (logFile == null
+                    && !Boolean.getBoolean(KEEP_LOGGING_CONFIGURATION_PROPERTY)) {
+                try {
+                    LogManager.getLogManager().readConfiguration(
+                            ScssStylesheet.class
+                                    .getResourceAsStream("/logging.properties"));
+                } catch (SecurityException e) {
+                    e.printStackTrace();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         }
+
+        private static void init() {
+            // the static initializer does the work
+        }
     }
 
+    /**
+     * Copies a style sheet (deep copy including children) together with its
+     * file, charset, resolvers, prefix and source URIs. This is mainly useful
+     * for compiling the same parsed style sheet several times, as compilation
+     * modifies the node tree.
+     * 
+     * @return copy of the style sheet
+     */
     @Override
-    public Node copy() {
-        throw new UnsupportedOperationException(
-                "ScssStylesheet cannot be copied");
+    public ScssStylesheet copy() {
+        return new ScssStylesheet(this);
     }
 
     public void write(Writer writer) throws IOException {
@@ -391,13 +821,40 @@ public class ScssStylesheet extends Node {
     }
 
     public void write(Writer writer, boolean minify) throws IOException {
+        write(writer, minify, getChildren());
+    }
+
+    /**
+     * Writes a part of the compiled style sheet, e.g. one of several output
+     * bundles. The nodes are written with the charset declaration of this
+     * style sheet.
+     * 
+     * @param writer
+     *            writer to write to
+     * @param minify
+     *            true to minify the output
+     * @param nodes
+     *            top-level nodes of this style sheet to write
+     * @throws IOException
+     */
+    public void write(Writer writer, boolean minify, List<Node> nodes)
+            throws IOException {
+        CompilationListener listener = getCompilationListener();
+        Object event = CompilerEvents.get().beginWrite();
+        long start = listener != null ? System.nanoTime() : 0;
+        String output = buildString(PRINT_STRATEGY, nodes);
         if (minify) {
             InputStreamReader reader = new InputStreamReader(
-                    new ByteArrayInputStream(printState().getBytes("UTF-8")));
+                    new ByteArrayInputStream(output.getBytes("UTF-8")));
             CssCompressor compressor = new CssCompressor(reader);
             compressor.compress(writer, -1);
         } else {
-            writer.write(printState());
+            writer.write(output);
+        }
+        CompilerEvents.get().endWrite(event, minify, output.length());
+        if (listener != null) {
+            listener.serializationFinished(minify, output.length(),
+                    System.nanoTime() - start);
         }
     }
 }
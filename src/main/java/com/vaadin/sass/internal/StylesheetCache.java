@@ -0,0 +1,143 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.w3c.css.sac.CSSException;
+
+import com.vaadin.sass.internal.handler.SCSSDocumentHandlerImpl;
+import com.vaadin.sass.internal.handler.SCSSErrorHandler;
+
+/**
+ * Cache of parsed imported style sheets that can be shared between
+ * compilations, including concurrent ones. Each imported style sheet is
+ * resolved and parsed only once; compilations get a copy of the cached,
+ * never traversed node tree.
+ * 
+ * Style sheets with parse errors or warnings are not cached, so that they are
+ * reparsed and the problems reported for every compilation.
+ * 
+ * The cache assumes that the imported style sheets do not change while it is
+ * in use, unless {@link #removeModified()} is called between compilations.
+ * 
+ * @author Vaadin Ltd
+ */
+public class StylesheetCache {
+
+    private final ConcurrentMap<String, Entry> stylesheets = new ConcurrentHashMap<String, Entry>();
+
+    private static class Entry {
+        private final ScssStylesheet stylesheet;
+        // modification time of the parsed file, 0 if not a file
+        private final long lastModified;
+
+        private Entry(ScssStylesheet stylesheet) {
+            this.stylesheet = stylesheet;
+            lastModified = getLastModified(stylesheet);
+        }
+
+        private boolean isModified() {
+            return lastModified != getLastModified(stylesheet);
+        }
+
+        private static long getLastModified(ScssStylesheet stylesheet) {
+            return new File(stylesheet.getFileName()).lastModified();
+        }
+    }
+
+    /**
+     * Returns a copy of the parsed style sheet for an import, parsing and
+     * caching it first if necessary. See
+     * {@link ScssStylesheet#get(String, ScssStylesheet)}.
+     * 
+     * @param identifier
+     *            the imported path
+     * @param parentStylesheet
+     *            the importing style sheet
+     * @return a copy of the parsed style sheet or null if it was not found
+     * @throws CSSException
+     * @throws IOException
+     */
+    public ScssStylesheet get(String identifier,
+            ScssStylesheet parentStylesheet) throws CSSException, IOException {
+        String key = parentStylesheet.getDirectory() + "\u0000"
+                + parentStylesheet.getCharset() + "\u0000" + identifier;
+        Entry entry = stylesheets.get(key);
+        if (entry == null) {
+            SCSSErrorHandler errorHandler = SCSSErrorHandler.get();
+            int problems = errorHandler != null ? errorHandler
+                    .getParseProblemCount() : 0;
+            ScssStylesheet parsed = ScssStylesheet.get(identifier,
+                    parentStylesheet, new SCSSDocumentHandlerImpl(),
+                    errorHandler);
+            if (parsed == null) {
+                return null;
+            }
+            if (errorHandler != null
+                    && errorHandler.getParseProblemCount() != problems) {
+                // not cached so that each compilation reports the problems
+                return parsed;
+            }
+            entry = new Entry(parsed);
+            Entry previous = stylesheets.putIfAbsent(key, entry);
+            if (previous != null) {
+                entry = previous;
+            }
+        }
+        return entry.stylesheet.copy();
+    }
+
+    /**
+     * Removes the style sheets whose files have been modified or deleted
+     * since they were parsed, so that a long-lived cache can be used for
+     * successive compilations of files that are being edited. Style sheets
+     * that were not read from a file (e.g. from the class path) are kept.
+     * 
+     * @return number of removed style sheets
+     */
+    public int removeModified() {
+        int removed = 0;
+        for (Iterator<Entry> it = stylesheets.values().iterator(); it
+                .hasNext();) {
+            if (it.next().isModified()) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of cached style sheets.
+     * 
+     * @return number of cached style sheets
+     */
+    public int size() {
+        return stylesheets.size();
+    }
+
+    /**
+     * Removes all cached style sheets.
+     */
+    public void clear() {
+        stylesheets.clear();
+    }
+}
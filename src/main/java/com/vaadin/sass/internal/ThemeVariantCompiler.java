@@ -0,0 +1,218 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.w3c.css.sac.CSSException;
+
+import com.vaadin.sass.internal.handler.SCSSErrorHandler;
+import com.vaadin.sass.internal.tree.Node;
+
+/**
+ * Compiles variants of a theme that only differ in the values of some
+ * variables, e.g. the $v-* parameters of Valo. The base style sheet and all
+ * the style sheets it imports are resolved and parsed only once and shared by
+ * all variants, which can be compiled in parallel.
+ * 
+ * The variable overrides of a variant are inserted at the beginning of the
+ * base style sheet, so they take precedence over variables defined with
+ * !default in the theme.
+ * 
+ * @author Vaadin Ltd
+ */
+public class ThemeVariantCompiler {
+
+    private final ScssStylesheet base;
+
+    private final StylesheetCache stylesheetCache = new StylesheetCache();
+
+    private ScssContext.UrlMode urlMode = ScssContext.UrlMode.MIXED;
+
+    /**
+     * Creates a variant compiler for a parsed base style sheet. The base
+     * style sheet must not be compiled or modified afterwards.
+     * 
+     * @param base
+     *            the parsed base style sheet
+     */
+    public ThemeVariantCompiler(ScssStylesheet base) {
+        this.base = base;
+    }
+
+    /**
+     * Creates a variant compiler for the style sheet with the given
+     * identifier.
+     * 
+     * @param identifier
+     *            The file path of the base style sheet
+     * @return variant compiler or null if the style sheet was not found
+     * @throws CSSException
+     * @throws IOException
+     */
+    public static ThemeVariantCompiler get(String identifier)
+            throws CSSException, IOException {
+        ScssStylesheet base = ScssStylesheet.get(identifier);
+        if (base == null) {
+            return null;
+        }
+        return new ThemeVariantCompiler(base);
+    }
+
+    public ScssContext.UrlMode getUrlMode() {
+        return urlMode;
+    }
+
+    public void setUrlMode(ScssContext.UrlMode urlMode) {
+        this.urlMode = urlMode;
+    }
+
+    /**
+     * Compiles a single variant of the theme.
+     * 
+     * @param overrides
+     *            map from variable names (with or without the leading $) to
+     *            SCSS values, e.g. "v-background-color" to "#444"
+     * @return the compiled style sheet
+     * @throws Exception
+     */
+    public ScssStylesheet compile(Map<String, String> overrides)
+            throws Exception {
+        SCSSErrorHandler errorHandler = SCSSErrorHandler.get();
+        ScssStylesheet variant = base.copy();
+        List<Node> overrideNodes = parseOverrides(overrides);
+        if (errorHandler != null) {
+            // parsing the overrides replaces the current error handler
+            SCSSErrorHandler.set(errorHandler);
+        }
+        variant.prependChildren(overrideNodes);
+
+        ScssContext context = new ScssContext(urlMode);
+        context.setStylesheetCache(stylesheetCache);
+        variant.compile(context);
+        return variant;
+    }
+
+    /**
+     * Compiles several variants of the theme in parallel, using at most as
+     * many threads as there are available processors.
+     * 
+     * @param variants
+     *            variable overrides for each variant, see
+     *            {@link #compile(Map)}
+     * @return the compiled style sheets in the same order as the variants
+     * @throws Exception
+     *             if compiling any of the variants fails
+     */
+    public List<ScssStylesheet> compile(List<Map<String, String>> variants)
+            throws Exception {
+        int threads = Math.min(variants.size(), Runtime.getRuntime()
+                .availableProcessors());
+        if (threads <= 1) {
+            List<ScssStylesheet> result = new ArrayList<ScssStylesheet>();
+            for (Map<String, String> overrides : variants) {
+                result.add(compile(overrides));
+            }
+            return result;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            return compile(variants, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Compiles several variants of the theme in parallel using the given
+     * executor. Each variant is compiled with its own error handler.
+     * 
+     * @param variants
+     *            variable overrides for each variant, see
+     *            {@link #compile(Map)}
+     * @param executor
+     *            the executor to run the compilations in
+     * @return the compiled style sheets in the same order as the variants
+     * @throws Exception
+     *             if compiling any of the variants fails
+     */
+    public List<ScssStylesheet> compile(List<Map<String, String>> variants,
+            ExecutorService executor) throws Exception {
+        List<Future<ScssStylesheet>> futures = new ArrayList<Future<ScssStylesheet>>();
+        for (final Map<String, String> overrides : variants) {
+            futures.add(executor.submit(new Callable<ScssStylesheet>() {
+                @Override
+                public ScssStylesheet call() throws Exception {
+                    SCSSErrorHandler.set(new SCSSErrorHandler());
+                    return compile(overrides);
+                }
+            }));
+        }
+        List<ScssStylesheet> result = new ArrayList<ScssStylesheet>();
+        try {
+            for (Future<ScssStylesheet> future : futures) {
+                result.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            for (Future<ScssStylesheet> future : futures) {
+                future.cancel(true);
+            }
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cache of parsed imports shared by the variants.
+     * 
+     * @return style sheet cache
+     */
+    public StylesheetCache getStylesheetCache() {
+        return stylesheetCache;
+    }
+
+    private List<Node> parseOverrides(Map<String, String> overrides)
+            throws CSSException, IOException {
+        List<Node> result = new ArrayList<Node>();
+        if (overrides.isEmpty()) {
+            return result;
+        }
+        StringBuilder scss = new StringBuilder();
+        for (Map.Entry<String, String> entry : overrides.entrySet()) {
+            String name = entry.getKey();
+            if (!name.startsWith("$")) {
+                scss.append('$');
+            }
+            scss.append(name).append(": ").append(entry.getValue())
+                    .append(";\n");
+        }
+        ScssStylesheet parsed = ScssStylesheet.getFromString(
+                "variant-overrides.scss", scss.toString());
+        result.addAll(parsed.getChildren());
+        return result;
+    }
+}
@@ -36,6 +36,8 @@ public class SCSSErrorHandler implements ErrorHandler {
 
     private boolean errorsDetected = false;
     private boolean warningsAreErrors = true;
+    // number of parse errors and warnings reported so far
+    private int parseProblemCount = 0;
 
     public SCSSErrorHandler() {
     }
@@ -46,6 +48,7 @@ public class SCSSErrorHandler implements ErrorHandler {
                 + e.getLineNumber() + ", column " + e.getColumnNumber());
         log(e);
         errorsDetected = true;
+        parseProblemCount++;
     }
 
     @Override
@@ -54,6 +57,7 @@ public class SCSSErrorHandler implements ErrorHandler {
                 + e.getLineNumber() + ", column " + e.getColumnNumber());
         log(e);
         errorsDetected = true;
+        parseProblemCount++;
     }
 
     @Override
@@ -61,6 +65,7 @@ public class SCSSErrorHandler implements ErrorHandler {
         warn("Warning when parsing file \n" + e.getURI() + " on line "
                 + e.getLineNumber() + ", column " + e.getColumnNumber());
         warn(e);
+        parseProblemCount++;
         if (warningsAreErrors) {
             errorsDetected = true;
         }
@@ -106,6 +111,16 @@ public class SCSSErrorHandler implements ErrorHandler {
         errorsDetected = true;
     }
 
+    /**
+     * Returns the number of parse errors and warnings reported to this
+     * handler, e.g. to find out whether a style sheet parsed cleanly.
+     * 
+     * @return number of parse errors and warnings
+     */
+    public int getParseProblemCount() {
+        return parseProblemCount;
+    }
+
     public boolean isErrorsDetected() {
         return errorsDetected;
     }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.jfr;
+
+import com.vaadin.sass.internal.CompilerEvents;
+
+/**
+ * {@link CompilerEvents} implementation emitting JDK Flight Recorder events.
+ * Events are only created when they are enabled in a running recording.
+ * 
+ * This class is installed by {@link JfrInstaller} and must not be referenced
+ * directly.
+ * 
+ * @author Vaadin Ltd
+ */
+public class JfrCompilerEvents extends CompilerEvents {
+
+    private static <T extends jdk.jfr.Event> T begin(T event) {
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Object beginParse() {
+        return begin(new ParseEvent());
+    }
+
+    @Override
+    public void endParse(Object handle, String uri, long bytes) {
+        if (handle != null) {
+            ParseEvent event = (ParseEvent) handle;
+            event.end();
+            if (event.shouldCommit()) {
+                event.uri = uri;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public Object beginResolve() {
+        return begin(new ResolveEvent());
+    }
+
+    @Override
+    public void endResolve(Object handle, String resolver, String identifier,
+            String uri) {
+        if (handle != null) {
+            ResolveEvent event = (ResolveEvent) handle;
+            event.end();
+            if (event.shouldCommit()) {
+                event.resolver = resolver;
+                event.identifier = identifier;
+                event.uri = uri;
+                event.hit = uri != null;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public Object beginMixin() {
+        return begin(new MixinEvent());
+    }
+
+    @Override
+    public void endMixin(Object handle, String name, int nodes) {
+        if (handle != null) {
+            MixinEvent event = (MixinEvent) handle;
+            event.end();
+            if (event.shouldCommit()) {
+                event.name = name;
+                event.nodes = nodes;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public Object beginExtend() {
+        return begin(new ExtendEvent());
+    }
+
+    @Override
+    public void endExtend(Object handle, int selectorsIn, int selectorsOut) {
+        if (handle != null) {
+            ExtendEvent event = (ExtendEvent) handle;
+            event.end();
+            if (event.shouldCommit()) {
+                event.selectorsIn = selectorsIn;
+                event.selectorsOut = selectorsOut;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public Object beginWrite() {
+        return begin(new WriteEvent());
+    }
+
+    @Override
+    public void endWrite(Object handle, boolean minified, long chars) {
+        if (handle != null) {
+            WriteEvent event = (WriteEvent) handle;
+            event.end();
+            if (event.shouldCommit()) {
+                event.minified = minified;
+                event.chars = chars;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+import com.vaadin.sass.internal.CompilerEvents;
+
+/**
+ * Installs {@link JfrCompilerEvents} once the flight recorder is initialized.
+ * This class is loaded reflectively by {@link CompilerEvents} and does not
+ * reference the event classes, as loading them registers them with JFR.
+ * 
+ * @author Vaadin Ltd
+ */
+public class JfrInstaller {
+
+    private JfrInstaller() {
+    }
+
+    /**
+     * Starts emitting JFR events if the flight recorder is initialized. A
+     * listener for the initialization is not used, as registering one takes
+     * longer than compiling a small style sheet.
+     * 
+     * @return true if the events were installed
+     */
+    public static boolean install() {
+        if (!FlightRecorder.isInitialized()) {
+            return false;
+        }
+        CompilerEvents.setInstance(new JfrCompilerEvents());
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for expanding a mixin.
+ * 
+ * @author Vaadin Ltd
+ */
+@Name("com.vaadin.sass.Mixin")
+@Label("Mixin Expansion")
+@Description("Expansion of an @include")
+@Category({ "Vaadin", "Sass Compiler" })
+public class MixinEvent extends jdk.jfr.Event {
+
+    @Label("Mixin")
+    public String name;
+
+    @Label("Nodes Generated")
+    public int nodes;
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for parsing a style sheet.
+ * 
+ * @author Vaadin Ltd
+ */
+@Name("com.vaadin.sass.Parse")
+@Label("Parse Style Sheet")
+@Description("Parsing of an SCSS style sheet or import")
+@Category({ "Vaadin", "Sass Compiler" })
+public class ParseEvent extends jdk.jfr.Event {
+
+    @Label("URI")
+    public String uri;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
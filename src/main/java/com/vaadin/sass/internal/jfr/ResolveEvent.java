@@ -0,0 +1,45 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for resolving an import with a single resolver.
+ * 
+ * @author Vaadin Ltd
+ */
+@Name("com.vaadin.sass.Resolve")
+@Label("Resolve Import")
+@Description("Resolution of a style sheet by a single resolver")
+@Category({ "Vaadin", "Sass Compiler" })
+public class ResolveEvent extends jdk.jfr.Event {
+
+    @Label("Resolver")
+    public String resolver;
+
+    @Label("Identifier")
+    public String identifier;
+
+    @Label("URI")
+    public String uri;
+
+    @Label("Hit")
+    public boolean hit;
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for writing out a compiled style sheet.
+ * 
+ * @author Vaadin Ltd
+ */
+@Name("com.vaadin.sass.Write")
+@Label("Write Output")
+@Description("Serialization and optional minification of the compiled CSS")
+@Category({ "Vaadin", "Sass Compiler" })
+public class WriteEvent extends jdk.jfr.Event {
+
+    @Label("Minified")
+    public boolean minified;
+
+    @Label("Characters")
+    public long chars;
+}
@@ -19,8 +19,10 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import com.vaadin.sass.internal.ScssContext;
 
@@ -42,6 +44,9 @@ public class FormalArgumentList implements Serializable, Iterable<Variable> {
 
     private ArrayList<Variable> arglist;
     private String variableArgumentName = null;
+    // position of each argument by name, shared by the argument lists
+    // derived from this list as they have the same argument names
+    private Map<String, Integer> indexByName;
 
     public FormalArgumentList(Collection<Variable> args,
             boolean hasVariableArguments) {
@@ -57,10 +62,21 @@ public class FormalArgumentList implements Serializable, Iterable<Variable> {
         } else {
             arglist = new ArrayList<Variable>();
         }
+        indexByName = new HashMap<String, Integer>();
+        for (int i = arglist.size() - 1; i >= 0; i--) {
+            indexByName.put(arglist.get(i).getName(), i);
+        }
+    }
+
+    private FormalArgumentList(ArrayList<Variable> arglist,
+            String variableArgumentName, Map<String, Integer> indexByName) {
+        this.arglist = arglist;
+        this.variableArgumentName = variableArgumentName;
+        this.indexByName = indexByName;
     }
 
     public FormalArgumentList replaceVariables(ScssContext context) {
-        ArrayList<Variable> result = new ArrayList<Variable>();
+        ArrayList<Variable> result = new ArrayList<Variable>(arglist.size());
         for (final Variable arg : arglist) {
             SassListItem expr = arg.getExpr();
             if (expr != null) {
@@ -74,7 +90,8 @@ public class FormalArgumentList implements Serializable, Iterable<Variable> {
             }
             result.add(new Variable(arg.getName(), expr));
         }
-        return new FormalArgumentList(result, hasVariableArguments());
+        return new FormalArgumentList(result, variableArgumentName,
+                indexByName);
     }
 
     /**
@@ -123,6 +140,10 @@ public class FormalArgumentList implements Serializable, Iterable<Variable> {
     public FormalArgumentList replaceFormalArguments(
             ActualArgumentList actualArgumentList,
             boolean checkForUnsetParameters) {
+        if (actualArgumentList.getNamedVariables().isEmpty()) {
+            return replacePositionalArguments(actualArgumentList,
+                    checkForUnsetParameters);
+        }
         ArrayList<Variable> result = initializeArgumentList(arglist);
         List<Variable> unusedNamedActual = replaceNamedArguments(result,
                 actualArgumentList);
@@ -143,7 +164,56 @@ public class FormalArgumentList implements Serializable, Iterable<Variable> {
                                 + actualArgumentList, actualArgumentList);
             }
         }
-        return new FormalArgumentList(result, false);
+        return new FormalArgumentList(result, null, indexByName);
+    }
+
+    /**
+     * Fast path of {@link #replaceFormalArguments(ActualArgumentList, boolean)}
+     * for actual argument lists without named arguments. The actual arguments
+     * are bound to the formal arguments in order without intermediate lists.
+     */
+    private FormalArgumentList replacePositionalArguments(
+            ActualArgumentList actualArguments, boolean checkForUnsetParameters) {
+        int formalCount = arglist.size();
+        int maxFormalIndex = hasVariableArguments() ? formalCount - 1
+                : formalCount;
+        int actualCount = actualArguments.size();
+        if (actualCount > maxFormalIndex && !hasVariableArguments()) {
+            throw new ParseException(
+                    "Substitution error: some actual parameters were not used. Formal parameters: "
+                            + this + ", actual parameters: " + actualArguments,
+                    actualArguments);
+        }
+        ArrayList<Variable> result = new ArrayList<Variable>(formalCount);
+        int bound = Math.min(actualCount, maxFormalIndex);
+        for (int i = 0; i < bound; i++) {
+            result.add(new Variable(arglist.get(i).getName(), actualArguments
+                    .get(i)));
+        }
+        // default values
+        for (int i = bound; i < maxFormalIndex; i++) {
+            Variable formalArg = arglist.get(i);
+            if (formalArg.getExpr() == null && checkForUnsetParameters) {
+                throw new ParseException(
+                        "Argument substitution error: there is no value for the argument "
+                                + formalArg.getName() + ". Formal arguments: "
+                                + this + ", actual arguments: "
+                                + actualArguments, actualArguments);
+            }
+            result.add(new Variable(formalArg.getName(), formalArg.getExpr()));
+        }
+        if (hasVariableArguments()) {
+            ArrayList<SassListItem> remaining = new ArrayList<SassListItem>(
+                    actualCount - bound);
+            for (int i = bound; i < actualCount; i++) {
+                remaining.add(actualArguments.get(i));
+            }
+            ArgumentList varArgContents = new ArgumentList(
+                    actualArguments.getSeparator(), remaining,
+                    new ArrayList<Variable>());
+            result.add(new Variable(variableArgumentName, varArgContents));
+        }
+        return new FormalArgumentList(result, null, indexByName);
     }
 
     /**
@@ -172,22 +242,21 @@ public class FormalArgumentList implements Serializable, Iterable<Variable> {
             ActualArgumentList actualArguments) {
         ArrayList<Variable> unusedNamed = new ArrayList<Variable>();
         for (Variable actualArg : actualArguments.getNamedVariables()) {
-            boolean actualUsed = false;
-            for (Variable formalArg : formalArguments) {
-                if (formalArg.getName().equals(actualArg.getName())
-                        && !actualArg.getName().equals(variableArgumentName)) {
-                    if (formalArg.getExpr() != null) {
-                        throw new ParseException(
-                                "The named argument $"
-                                        + formalArg.getName()
-                                        + "appears more than once in the actual argument list: "
-                                        + actualArguments, actualArguments);
-                    }
-                    actualUsed = true;
-                    formalArg.setExpr(actualArg.getExpr());
-                }
+            Integer index = null;
+            if (!actualArg.getName().equals(variableArgumentName)) {
+                index = indexByName.get(actualArg.getName());
             }
-            if (!actualUsed) {
+            if (index != null) {
+                Variable formalArg = formalArguments.get(index);
+                if (formalArg.getExpr() != null) {
+                    throw new ParseException(
+                            "The named argument $"
+                                    + formalArg.getName()
+                                    + "appears more than once in the actual argument list: "
+                                    + actualArguments, actualArguments);
+                }
+                formalArg.setExpr(actualArg.getExpr());
+            } else {
                 if (!hasVariableArguments()) {
                     throw new ParseException(
                             "There is no formal argument corresponding to the actual argument "
@@ -281,7 +350,8 @@ public class FormalArgumentList implements Serializable, Iterable<Variable> {
 
     private static ArrayList<Variable> initializeArgumentList(
             List<Variable> namedParameters) {
-        ArrayList<Variable> result = new ArrayList<Variable>();
+        ArrayList<Variable> result = new ArrayList<Variable>(
+                namedParameters.size());
         for (Variable var : namedParameters) {
             result.add(new Variable(var.getName(), null));
         }
@@ -309,6 +379,18 @@ public class FormalArgumentList implements Serializable, Iterable<Variable> {
         return arglist.get(i);
     }
 
+    /**
+     * Returns the position of the argument with the given name.
+     * 
+     * @param name
+     *            argument name
+     * @return index of the argument or -1 if there is no such argument
+     */
+    public int indexOf(String name) {
+        Integer index = indexByName.get(name);
+        return index == null ? -1 : index;
+    }
+
     public List<Variable> getArguments() {
         return Collections.unmodifiableList(arglist);
     }
@@ -342,6 +424,7 @@ public class FormalArgumentList implements Serializable, Iterable<Variable> {
                 newArgList.add(var);
             }
         }
-        return new FormalArgumentList(newArgList, variableArgumentName != null);
+        return new FormalArgumentList(newArgList, variableArgumentName,
+                indexByName);
     }
 }
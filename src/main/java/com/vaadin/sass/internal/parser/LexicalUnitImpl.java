@@ -24,8 +24,6 @@
 package com.vaadin.sass.internal.parser;
 
 import java.io.Serializable;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -35,6 +33,7 @@ import java.util.regex.Pattern;
 
 import org.w3c.css.sac.LexicalUnit;
 
+import com.vaadin.sass.internal.DefinitionProfiler;
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.expression.exception.IncompatibleUnitsException;
 import com.vaadin.sass.internal.parser.function.AbsFunctionGenerator;
@@ -71,6 +70,7 @@ import com.vaadin.sass.internal.tree.FunctionDefNode;
 import com.vaadin.sass.internal.tree.Node;
 import com.vaadin.sass.internal.tree.Node.BuildStringStrategy;
 import com.vaadin.sass.internal.util.ColorUtil;
+import com.vaadin.sass.internal.util.CssNumberFormat;
 import com.vaadin.sass.internal.util.StringUtil;
 
 /**
@@ -85,9 +85,6 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
 
     public static final long PRECISION = 100000L;
 
-    private static final DecimalFormat CSS_FLOAT_FORMAT = new DecimalFormat(
-            "0.0####");
-
     private short type;
     private int line;
     private int column;
@@ -237,7 +234,17 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
         if (i == f) {
             return Integer.toString(i);
         } else {
-            return CSS_FLOAT_FORMAT.format(f);
+            return CssNumberFormat.format(f);
+        }
+    }
+
+    private StringBuilder appendFloatOrInteger(StringBuilder builder) {
+        float f = getFloatValue();
+        int i = (int) f;
+        if (i == f) {
+            return builder.append(i);
+        } else {
+            return CssNumberFormat.append(builder, f);
         }
     }
 
@@ -823,7 +830,16 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
             if (generator == null) {
                 generator = DEFAULT_SERIALIZER;
             }
-            return generator.compute(context, copy);
+            DefinitionProfiler profiler = context.getDefinitionProfiler();
+            if (profiler == null) {
+                return generator.compute(context, copy);
+            }
+            profiler.enter(DefinitionProfiler.Kind.BUILTIN, getFunctionName());
+            try {
+                return generator.compute(context, copy);
+            } finally {
+                profiler.exit(0);
+            }
         } else {
             return this;
         }
@@ -839,7 +855,20 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
     }
 
     private static SCSSFunctionGenerator getGenerator(String funcName) {
-        return SERIALIZERS.get(funcName);
+        return FunctionGenerators.BY_NAME.get(funcName);
+    }
+
+    // built-in function generators, created on the first function call
+    private static class FunctionGenerators {
+        private static final Map<String, SCSSFunctionGenerator> BY_NAME = new HashMap<String, SCSSFunctionGenerator>();
+
+        static {
+            for (SCSSFunctionGenerator serializer : initSerializers()) {
+                for (String functionName : serializer.getFunctionNames()) {
+                    BY_NAME.put(functionName, serializer);
+                }
+            }
+        }
     }
 
     private static List<SCSSFunctionGenerator> initSerializers() {
@@ -874,8 +903,6 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
         return list;
     }
 
-    private static final Map<String, SCSSFunctionGenerator> SERIALIZERS = new HashMap<String, SCSSFunctionGenerator>();
-
     private static final SCSSFunctionGenerator DEFAULT_SERIALIZER = new DefaultFunctionGenerator();
 
     private String simpleAsString() {
@@ -964,7 +991,8 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
         case LexicalUnit.SAC_HERTZ:
         case LexicalUnit.SAC_KILOHERTZ:
         case LexicalUnit.SAC_DIMENSION:
-            text = getFloatOrInteger() + getDimensionUnitText();
+            text = appendFloatOrInteger(new StringBuilder(12)).append(
+                    getDimensionUnitText()).toString();
             break;
         }
         return text;
@@ -1009,7 +1037,7 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
                     } else if (params.size() == 2 || ColorUtil.isHsla(this)) {
 
                         String alphaText = alpha == 0.0f ? "0"
-                                : CSS_FLOAT_FORMAT.format(alpha);
+                                : CssNumberFormat.format(alpha);
                         text = "rgba(" + rgb[0] + ", " + rgb[1] + ", " + rgb[2]
                                 + ", " + alphaText + ")";
                         break;
@@ -1054,17 +1082,6 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
         return new int[] { red, green, blue };
     }
 
-    static {
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setDecimalSeparator('.');
-        CSS_FLOAT_FORMAT.setDecimalFormatSymbols(symbols);
-        for (SCSSFunctionGenerator serializer : initSerializers()) {
-            for (String functionName : serializer.getFunctionNames()) {
-                SERIALIZERS.put(functionName, serializer);
-            }
-        }
-    }
-
     @Override
     public boolean containsArithmeticalOperator() {
         return false;
@@ -1093,6 +1110,9 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (!(o instanceof LexicalUnitImpl)) {
             return false;
         }
@@ -1108,12 +1128,20 @@ public class LexicalUnitImpl implements LexicalUnit, SCSSLexicalUnit,
         } else if (getLexicalUnitType() != other.getLexicalUnitType()) {
             return false;
         } else {
-            return printState().equals(other.printState());
+            // the hash code of the cached print state is cached by String
+            return hashCode() == other.hashCode()
+                    && printState().equals(other.printState());
         }
     }
 
     @Override
     public int hashCode() {
+        if (isNumber()) {
+            // consistent with equals(), which ignores the unit if either
+            // number is unitless
+            float value = getFloatValue();
+            return value == 0 ? 0 : Float.floatToIntBits(value);
+        }
         return printState().hashCode();
     }
 
@@ -46,6 +46,9 @@ public class SassExpression implements SassListItem, Serializable {
     private int line = 0;
     private int column = 0;
 
+    // cached hash code, 0 if not computed yet
+    private transient int hashCode;
+
     /**
      * Constructs a SassExpression from a list of items. The list is not copied
      * but used directly.
@@ -313,11 +316,15 @@ public class SassExpression implements SassListItem, Serializable {
      */
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (!(o instanceof SassExpression)) {
             return false;
         }
         SassExpression other = (SassExpression) o;
-        if (items.size() != other.items.size()) {
+        if (items.size() != other.items.size()
+                || hashCode() != other.hashCode()) {
             return false;
         }
         for (int i = 0; i < items.size(); i++) {
@@ -330,13 +337,17 @@ public class SassExpression implements SassListItem, Serializable {
 
     @Override
     public int hashCode() {
-        int result = 1;
-        for (int i = 0; i < items.size(); i++) {
-            int currentHash = 0;
-            if (items.get(i) != null) {
-                currentHash = items.get(i).hashCode();
+        int result = hashCode;
+        if (result == 0) {
+            result = 1;
+            for (int i = 0; i < items.size(); i++) {
+                int currentHash = 0;
+                if (items.get(i) != null) {
+                    currentHash = items.get(i).hashCode();
+                }
+                result = 41 * result + currentHash;
             }
-            result = 41 * result + currentHash;
+            hashCode = result;
         }
         return result;
     }
@@ -25,6 +25,7 @@ import java.util.List;
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.tree.Node;
 import com.vaadin.sass.internal.tree.Node.BuildStringStrategy;
+import com.vaadin.sass.internal.util.PersistentVector;
 
 /**
  * SassList is a list that has a specified separator character (comma or space)
@@ -55,6 +56,9 @@ public class SassList implements SassListItem, Iterable<SassListItem>,
 
     private final List<SassListItem> items;
 
+    // cached hash code of the items, 0 if not computed yet
+    private transient int hashCode;
+
     public SassList() {
         this(Separator.SPACE);
     }
@@ -73,6 +77,39 @@ public class SassList implements SassListItem, Iterable<SassListItem>,
         this.items = items;
     }
 
+    /**
+     * Returns a list containing the items of this list followed by item. This
+     * list is not modified. The new list shares its items with this list, so
+     * that appending repeatedly to the latest result takes amortized constant
+     * time per item.
+     * 
+     * @param item
+     *            item to append
+     * @param sep
+     *            separator of the new list
+     * @return new list with item appended
+     */
+    public SassList append(SassListItem item, Separator sep) {
+        return new SassList(sep, PersistentVector.<SassListItem> of(items)
+                .append(item));
+    }
+
+    /**
+     * Returns a list containing the items of this list followed by the items
+     * of another list. Neither list is modified. The new list shares its
+     * items with this list like {@link #append(SassListItem, Separator)}.
+     * 
+     * @param other
+     *            list whose items to append
+     * @param sep
+     *            separator of the new list
+     * @return new list with the items of other appended
+     */
+    public SassList join(SassList other, Separator sep) {
+        return new SassList(sep, PersistentVector.<SassListItem> of(items)
+                .appendAll(other.items));
+    }
+
     @Override
     public int getLineNumber() {
         return line;
@@ -194,23 +231,43 @@ public class SassList implements SassListItem, Iterable<SassListItem>,
     @Override
     public SassList evaluateFunctionsAndExpressions(ScssContext context,
             boolean evaluateArithmetics) {
-        List<SassListItem> list = new ArrayList<SassListItem>();
-        for (SassListItem item : this) {
-            list.add(item.evaluateFunctionsAndExpressions(context,
-                    evaluateArithmetics));
+        List<SassListItem> list = null;
+        for (int i = 0; i < size(); i++) {
+            SassListItem item = get(i);
+            SassListItem evaluated = item.evaluateFunctionsAndExpressions(
+                    context, evaluateArithmetics);
+            list = copyOnChange(list, i, item, evaluated);
         }
-        return new SassList(getSeparator(), list);
+        return list == null ? this : new SassList(getSeparator(), list);
     }
 
     @Override
     public SassList replaceVariables(ScssContext context) {
         // The actual replacing happens in LexicalUnitImpl, which also
         // implements SassListItem.
-        List<SassListItem> list = new ArrayList<SassListItem>();
-        for (SassListItem item : this) {
-            list.add(item.replaceVariables(context));
+        List<SassListItem> list = null;
+        for (int i = 0; i < size(); i++) {
+            SassListItem item = get(i);
+            list = copyOnChange(list, i, item, item.replaceVariables(context));
         }
-        return new SassList(getSeparator(), list);
+        return list == null ? this : new SassList(getSeparator(), list);
+    }
+
+    /**
+     * Helper for building a modified copy of the items only when an item
+     * actually changes. Returns null as long as all items are unchanged,
+     * allowing the list itself (and its shared items) to be reused.
+     */
+    private List<SassListItem> copyOnChange(List<SassListItem> copy,
+            int index, SassListItem item, SassListItem newItem) {
+        if (copy == null && newItem != item) {
+            copy = new ArrayList<SassListItem>(size());
+            copy.addAll(items.subList(0, index));
+        }
+        if (copy != null) {
+            copy.add(newItem);
+        }
+        return copy;
     }
 
     @Override
@@ -278,11 +335,14 @@ public class SassList implements SassListItem, Iterable<SassListItem>,
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (!(o instanceof SassList)) {
             return false;
         }
         SassList other = (SassList) o;
-        if (size() != other.size()) {
+        if (size() != other.size() || hashCode() != other.hashCode()) {
             return false;
         }
         if (size() > 1 && !getSeparator().equals(other.getSeparator())) {
@@ -298,13 +358,17 @@ public class SassList implements SassListItem, Iterable<SassListItem>,
 
     @Override
     public int hashCode() {
-        int result = 1;
-        for (int i = 0; i < size(); i++) {
-            int currentHash = 0;
-            if (get(i) != null) {
-                currentHash = get(i).hashCode();
+        int result = hashCode;
+        if (result == 0) {
+            result = 1;
+            for (int i = 0; i < size(); i++) {
+                int currentHash = 0;
+                if (get(i) != null) {
+                    currentHash = get(i).hashCode();
+                }
+                result = 41 * result + currentHash;
             }
-            result = 41 * result + currentHash;
+            hashCode = result;
         }
         return result;
     }
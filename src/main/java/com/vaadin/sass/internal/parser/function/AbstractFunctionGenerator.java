@@ -172,10 +172,9 @@ public abstract class AbstractFunctionGenerator implements
      *         name.
      */
     protected static SassListItem getParam(FormalArgumentList args, String name) {
-        for (Variable var : args.getArguments()) {
-            if (var.getName().equals(name)) {
-                return var.getExpr();
-            }
+        int index = args.indexOf(name);
+        if (index >= 0) {
+            return args.get(index).getExpr();
         }
         throw new ParseException("There is no argument " + name
                 + " in the argument list: " + args.toString());
@@ -15,8 +15,6 @@
  */
 package com.vaadin.sass.internal.parser.function;
 
-import java.util.ArrayList;
-
 import com.vaadin.sass.internal.parser.FormalArgumentList;
 import com.vaadin.sass.internal.parser.LexicalUnitImpl;
 import com.vaadin.sass.internal.parser.SassList;
@@ -39,17 +37,12 @@ public class ListAppendFunctionGenerator extends ListFunctionGenerator {
         SassListItem appendItem = getParam(actualArguments, "val");
 
         SassList list = asList(listAsItem);
-        ArrayList<SassListItem> newList = new ArrayList<SassListItem>();
-        for (SassListItem item : list) {
-            newList.add(item);
-        }
-        newList.add(appendItem);
 
         SassList.Separator sep = getSeparator(getParam(actualArguments,
                 "separator"));
         if (sep == null) { // determine the separator in "auto" mode
             sep = getAutoSeparator(list);
         }
-        return new SassList(sep, newList);
+        return list.append(appendItem, sep);
     }
 }
\ No newline at end of file
@@ -15,8 +15,6 @@
  */
 package com.vaadin.sass.internal.parser.function;
 
-import java.util.ArrayList;
-
 import com.vaadin.sass.internal.parser.FormalArgumentList;
 import com.vaadin.sass.internal.parser.LexicalUnitImpl;
 import com.vaadin.sass.internal.parser.SassList;
@@ -40,20 +38,13 @@ public class ListJoinFunctionGenerator extends ListFunctionGenerator {
 
         SassList firstList = asList(firstListAsItem);
         SassList secondList = asList(secondListAsItem);
-        ArrayList<SassListItem> newList = new ArrayList<SassListItem>();
-        for (SassListItem firstItem : firstList) {
-            newList.add(firstItem);
-        }
-        for (SassListItem secondItem : secondList) {
-            newList.add(secondItem);
-        }
 
         SassList.Separator sep = getSeparator(getParam(actualArguments,
                 "separator"));
         if (sep == null) { // determine the separator in "auto" mode
             sep = getAutoSeparator(firstList, secondList);
         }
-        return new SassList(sep, newList);
+        return firstList.join(secondList, sep);
     }
 
 }
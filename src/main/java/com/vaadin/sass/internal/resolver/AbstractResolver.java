@@ -91,8 +91,11 @@ public abstract class AbstractResolver implements ScssStylesheetResolver,
             ScssStylesheet parentStylesheet, String identifier) {
         List<String> potentialParents = new ArrayList<String>();
         if (parentStylesheet != null) {
-            potentialParents.add(extractFullPath(
-                    parentStylesheet.getDirectory(), identifier));
+            // in-memory style sheets may have a virtual path without a
+            // directory
+            String directory = parentStylesheet.getDirectory();
+            potentialParents.add(extractFullPath(directory != null ? directory
+                    : ".", identifier));
         }
 
         // Identifier can be a full path so extract the path part also as a
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.resolver;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.w3c.css.sac.InputSource;
+
+/**
+ * Resolver for style sheets that only exist in memory, e.g. generated
+ * variable files or virtual partials. Style sheets are registered with a
+ * virtual path and looked up using the same rules as for files, including
+ * partials (_name.scss) and paths relative to the importing style sheet.
+ * 
+ * @author Vaadin Ltd
+ */
+public class InMemoryResolver extends AbstractResolver {
+
+    private final Map<String, String> stylesheets = new ConcurrentHashMap<String, String>();
+
+    public InMemoryResolver() {
+    }
+
+    /**
+     * Creates a resolver with the given style sheets.
+     * 
+     * @param stylesheets
+     *            map from virtual paths to SCSS source code
+     */
+    public InMemoryResolver(Map<String, String> stylesheets) {
+        for (Map.Entry<String, String> entry : stylesheets.entrySet()) {
+            addStylesheet(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Registers a style sheet with a virtual path such as
+     * "tenant/_variables.scss". The ".scss" suffix is optional.
+     * 
+     * @param path
+     *            virtual path of the style sheet
+     * @param scss
+     *            SCSS source code
+     */
+    public void addStylesheet(String path, String scss) {
+        stylesheets.put(getFileName(normalize(path)), scss);
+    }
+
+    /**
+     * Removes a previously registered style sheet.
+     * 
+     * @param path
+     *            virtual path of the style sheet
+     */
+    public void removeStylesheet(String path) {
+        stylesheets.remove(getFileName(normalize(path)));
+    }
+
+    @Override
+    protected InputSource resolveNormalized(String identifier) {
+        String fileName = getFileName(identifier);
+        String scss = stylesheets.get(fileName);
+        if (scss == null) {
+            return null;
+        }
+        InputSource source = new InputSource(new StringReader(scss));
+        source.setURI(fileName);
+        return source;
+    }
+
+    private static String getFileName(String identifier) {
+        if (identifier.endsWith(".css") || identifier.endsWith(".scss")) {
+            return identifier;
+        }
+        return identifier + ".scss";
+    }
+
+}
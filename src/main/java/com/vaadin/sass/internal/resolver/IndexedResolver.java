@@ -0,0 +1,261 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.resolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.w3c.css.sac.InputSource;
+
+/**
+ * Resolver that looks up style sheets from an index of the .scss and .css
+ * entries in a set of jar files and directories. The index is built once, on
+ * first use, so probing for an import (including the partial and .css
+ * variants) does not scan the class path. Optionally, the contents of
+ * resolved style sheets are cached in memory as well.
+ * 
+ * The roots are assumed not to change while the resolver is in use, which is
+ * the case e.g. for theme jars on the class path of a running application.
+ * Identifiers are mapped to entries in the same way as in
+ * {@link ClassloaderResolver}.
+ * 
+ * @author Vaadin Ltd
+ */
+public class IndexedResolver extends AbstractResolver {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File[] roots;
+
+    private final boolean cacheContents;
+
+    // entry name -> jar or directory containing it, built lazily
+    private transient volatile Map<String, File> index;
+
+    private transient Map<String, byte[]> contentCache;
+
+    /**
+     * Creates a resolver for the given jar files and directories. Contents of
+     * resolved style sheets are not cached.
+     * 
+     * @param roots
+     *            jar files and/or class path directories to index
+     */
+    public IndexedResolver(File... roots) {
+        this(false, roots);
+    }
+
+    /**
+     * Creates a resolver for the given jar files and directories.
+     * 
+     * @param cacheContents
+     *            true to keep the bytes of resolved style sheets in memory
+     * @param roots
+     *            jar files and/or class path directories to index
+     */
+    public IndexedResolver(boolean cacheContents, File... roots) {
+        this.cacheContents = cacheContents;
+        this.roots = roots.clone();
+    }
+
+    /**
+     * Creates a resolver for all the entries of the system class path
+     * (java.class.path).
+     * 
+     * @param cacheContents
+     *            true to keep the bytes of resolved style sheets in memory
+     * @return a new resolver
+     */
+    public static IndexedResolver forClasspath(boolean cacheContents) {
+        String classpath = System.getProperty("java.class.path", "");
+        String[] paths = classpath.split(File.pathSeparator);
+        File[] roots = new File[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            roots[i] = new File(paths[i]);
+        }
+        return new IndexedResolver(cacheContents, roots);
+    }
+
+    @Override
+    public InputSource resolveNormalized(String identifier) {
+        String fileName = identifier;
+        if (!fileName.endsWith(".css")) {
+            fileName += ".scss";
+        }
+
+        // Filename should be a relative path starting with VAADIN/...
+        int vaadinIdx = fileName.lastIndexOf("VAADIN/");
+        if (vaadinIdx > -1) {
+            fileName = fileName.substring(vaadinIdx);
+        }
+
+        File root = getIndex().get(fileName);
+        if (root == null) {
+            return null;
+        }
+        byte[] contents = getContents(root, fileName);
+        if (contents == null) {
+            return null;
+        }
+        InputSource source = new InputSource();
+        source.setByteStream(new ByteArrayInputStream(contents));
+        source.setURI(fileName);
+        return source;
+    }
+
+    /**
+     * Returns the number of indexed style sheets.
+     * 
+     * @return number of .scss and .css entries found in the roots
+     */
+    public int getIndexSize() {
+        return getIndex().size();
+    }
+
+    private Map<String, File> getIndex() {
+        Map<String, File> result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    result = buildIndex();
+                    contentCache = new ConcurrentHashMap<String, byte[]>();
+                    index = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Map<String, File> buildIndex() {
+        Map<String, File> result = new HashMap<String, File>();
+        // iterate in reverse so that earlier roots take precedence like on
+        // the class path
+        for (int i = roots.length - 1; i >= 0; i--) {
+            File root = roots[i];
+            if (root.isDirectory()) {
+                indexDirectory(root, root, "", result);
+            } else if (root.isFile()) {
+                indexJar(root, result);
+            }
+        }
+        return result;
+    }
+
+    private static void indexDirectory(File root, File directory,
+            String prefix, Map<String, File> result) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                indexDirectory(root, file, name + "/", result);
+            } else if (isStylesheet(name)) {
+                result.put(name, root);
+            }
+        }
+    }
+
+    private static void indexJar(File jar, Map<String, File> result) {
+        try {
+            ZipFile zip = new ZipFile(jar);
+            try {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && isStylesheet(entry.getName())) {
+                        result.put(entry.getName(), jar);
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        } catch (IOException e) {
+            Logger.getLogger(IndexedResolver.class.getName()).log(
+                    Level.WARNING, "Could not index " + jar, e);
+        }
+    }
+
+    private static boolean isStylesheet(String name) {
+        return name.endsWith(".scss") || name.endsWith(".css");
+    }
+
+    private byte[] getContents(File root, String fileName) {
+        if (cacheContents) {
+            byte[] cached = contentCache.get(fileName);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] contents;
+        try {
+            if (root.isDirectory()) {
+                contents = read(new FileInputStream(new File(root, fileName)));
+            } else {
+                ZipFile zip = new ZipFile(root);
+                try {
+                    ZipEntry entry = zip.getEntry(fileName);
+                    if (entry == null) {
+                        // the jar has changed since it was indexed
+                        throw new FileNotFoundException(fileName + " in "
+                                + root);
+                    }
+                    contents = read(zip.getInputStream(entry));
+                } finally {
+                    zip.close();
+                }
+            }
+        } catch (IOException e) {
+            Logger.getLogger(IndexedResolver.class.getName()).log(
+                    Level.WARNING, "Could not read " + fileName, e);
+            return null;
+        }
+        if (cacheContents) {
+            contentCache.put(fileName, contents);
+        }
+        return contents;
+    }
+
+    private static byte[] read(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = stream.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+}
@@ -85,6 +85,12 @@ public class AttributeSelector extends SimpleSelector {
         }
     }
 
+    @Override
+    public boolean containsInterpolation() {
+        return attribute.containsInterpolation()
+                || (value != null && value.containsInterpolation());
+    }
+
     @Override
     public AttributeSelector replaceVariables(ScssContext context) {
         StringInterpolationSequence newAttribute = attribute
@@ -40,6 +40,11 @@ public class ClassSelector extends SimpleSelector {
         return "." + getClassValue();
     }
 
+    @Override
+    public boolean containsInterpolation() {
+        return classValue.containsInterpolation();
+    }
+
     @Override
     public ClassSelector replaceVariables(ScssContext context) {
         return new ClassSelector(classValue.replaceVariables(context));
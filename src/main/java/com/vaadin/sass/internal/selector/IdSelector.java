@@ -39,6 +39,11 @@ public class IdSelector extends SimpleSelector {
         return "#" + getValue();
     }
 
+    @Override
+    public boolean containsInterpolation() {
+        return value.containsInterpolation();
+    }
+
     @Override
     public IdSelector replaceVariables(ScssContext context) {
         return new IdSelector(value.replaceVariables(context));
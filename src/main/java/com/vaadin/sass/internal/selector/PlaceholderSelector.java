@@ -38,6 +38,11 @@ public class PlaceholderSelector extends SimpleSelector {
         return "%" + getValue();
     }
 
+    @Override
+    public boolean containsInterpolation() {
+        return value.containsInterpolation();
+    }
+
     @Override
     public PlaceholderSelector replaceVariables(ScssContext context) {
         return new PlaceholderSelector(value.replaceVariables(context));
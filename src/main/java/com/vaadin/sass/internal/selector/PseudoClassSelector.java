@@ -51,11 +51,17 @@ public class PseudoClassSelector extends SimpleSelector {
         }
     }
 
+    @Override
+    public boolean containsInterpolation() {
+        return pseudoClass.containsInterpolation()
+                || (argument != null && argument.contains("#{"));
+    }
+
     @Override
     public PseudoClassSelector replaceVariables(ScssContext context) {
-        if (argument == null) {
+        if (argument == null || !argument.contains("#{")) {
             return new PseudoClassSelector(
-                    pseudoClass.replaceVariables(context));
+                    pseudoClass.replaceVariables(context), argument);
         } else {
             return new PseudoClassSelector(
                     pseudoClass.replaceVariables(context),
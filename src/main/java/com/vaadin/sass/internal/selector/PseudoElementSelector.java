@@ -40,6 +40,11 @@ public class PseudoElementSelector extends SimpleSelector {
         return "::" + pseudoElement;
     }
 
+    @Override
+    public boolean containsInterpolation() {
+        return pseudoElement.containsInterpolation();
+    }
+
     @Override
     public PseudoElementSelector replaceVariables(ScssContext context) {
         return new PseudoElementSelector(
@@ -45,6 +45,10 @@ public class Selector implements Serializable {
 
     private List<SelectorSegment> parts = new ArrayList<SelectorSegment>();
 
+    // cached hash code, 0 if not computed yet - selectors are not modified
+    // after they have been constructed
+    private transient int hashCode;
+
     private Selector() {
         /*
          * Initializes selector in an illegal state (simpleSeqs empty), hence
@@ -90,6 +94,11 @@ public class Selector implements Serializable {
         parts.addAll(second.parts);
     }
 
+    // the parts of the selector, must not be modified
+    List<SelectorSegment> getParts() {
+        return parts;
+    }
+
     private boolean hasLeadingCombinator() {
         return parts.size() > 0 && parts.get(0) instanceof Combinator;
     }
@@ -226,6 +235,10 @@ public class Selector implements Serializable {
      * Replace variables with their values (textually) in subselectors
      */
     public Selector replaceVariables(ScssContext context) {
+        if (!containsInterpolation()) {
+            // static selectors are shared as is
+            return this;
+        }
         // It would be sensible to rethink the whole handling of interpolations
         Selector sel = new Selector();
         for (SelectorSegment segment : parts) {
@@ -240,6 +253,22 @@ public class Selector implements Serializable {
         return sel;
     }
 
+    /**
+     * Returns whether any part of the selector may contain interpolation.
+     * 
+     * @return false if the selector does not contain interpolation
+     */
+    public boolean containsInterpolation() {
+        for (SelectorSegment segment : parts) {
+            if (segment instanceof SimpleSelectorSequence
+                    && ((SimpleSelectorSequence) segment)
+                            .containsInterpolation()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Appends the given sequence of simple selectors to this selector using
      * combinator c.
@@ -367,17 +396,25 @@ public class Selector implements Serializable {
 
     @Override
     public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        }
         if (!(that instanceof Selector)) {
             return false;
         }
         Selector thatSelector = (Selector) that;
-        return parts.equals(thatSelector.parts);
-
+        return hashCode() == thatSelector.hashCode()
+                && parts.equals(thatSelector.parts);
     }
 
     @Override
     public int hashCode() {
-        return parts.hashCode();
+        int result = hashCode;
+        if (result == 0) {
+            result = parts.hashCode();
+            hashCode = result;
+        }
+        return result;
     }
 
     /**
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.selector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canonicalization table for selectors, scoped to a compilation. Equal
+ * selectors, simple selector sequences and simple selectors interned in the
+ * same table are represented by the same instance, so that large outputs with
+ * many repeated selectors share them and equality checks of interned
+ * selectors succeed by reference comparison.
+ * 
+ * This class is not thread safe.
+ * 
+ * @author Vaadin Ltd
+ */
+public class SelectorInterner {
+
+    private final Map<Selector, Selector> selectors = new HashMap<Selector, Selector>();
+
+    private final Map<SimpleSelectorSequence, SimpleSelectorSequence> sequences = new HashMap<SimpleSelectorSequence, SimpleSelectorSequence>();
+
+    private final Map<SimpleSelector, SimpleSelector> simpleSelectors = new HashMap<SimpleSelector, SimpleSelector>();
+
+    /**
+     * Returns the canonical instance of a selector, whose parts are also
+     * canonical.
+     * 
+     * @param selector
+     *            selector to intern
+     * @return canonical selector equal to the parameter
+     */
+    public Selector intern(Selector selector) {
+        Selector result = selectors.get(selector);
+        if (result == null) {
+            List<SelectorSegment> parts = selector.getParts();
+            List<SelectorSegment> internedParts = null;
+            for (int i = 0; i < parts.size(); i++) {
+                SelectorSegment part = parts.get(i);
+                SelectorSegment interned = part;
+                if (part instanceof SimpleSelectorSequence) {
+                    interned = intern((SimpleSelectorSequence) part);
+                }
+                if (interned != part && internedParts == null) {
+                    internedParts = new ArrayList<SelectorSegment>(parts);
+                }
+                if (internedParts != null) {
+                    internedParts.set(i, interned);
+                }
+            }
+            result = internedParts == null ? selector : new Selector(
+                    internedParts);
+            selectors.put(result, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new list with the canonical instances of the given selectors.
+     * 
+     * @param selectorList
+     *            selectors to intern
+     * @return list of canonical selectors
+     */
+    public List<Selector> intern(List<Selector> selectorList) {
+        List<Selector> result = new ArrayList<Selector>(selectorList.size());
+        for (Selector selector : selectorList) {
+            result.add(intern(selector));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the canonical instance of a simple selector sequence, whose
+     * simple selectors are also canonical.
+     * 
+     * @param sequence
+     *            simple selector sequence to intern
+     * @return canonical simple selector sequence equal to the parameter
+     */
+    public SimpleSelectorSequence intern(SimpleSelectorSequence sequence) {
+        SimpleSelectorSequence result = sequences.get(sequence);
+        if (result == null) {
+            List<SimpleSelector> simples = sequence.getSimpleSelectors();
+            List<SimpleSelector> internedSimples = null;
+            for (int i = 0; i < simples.size(); i++) {
+                SimpleSelector simple = simples.get(i);
+                SimpleSelector interned = intern(simple);
+                if (interned != simple && internedSimples == null) {
+                    internedSimples = new ArrayList<SimpleSelector>(simples);
+                }
+                if (internedSimples != null) {
+                    internedSimples.set(i, interned);
+                }
+            }
+            result = internedSimples == null ? sequence
+                    : new SimpleSelectorSequence(internedSimples);
+            sequences.put(result, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the canonical instance of a simple selector.
+     * 
+     * @param simple
+     *            simple selector to intern
+     * @return canonical simple selector equal to the parameter
+     */
+    public SimpleSelector intern(SimpleSelector simple) {
+        SimpleSelector result = simpleSelectors.get(simple);
+        if (result == null) {
+            result = simple;
+            simpleSelectors.put(result, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of distinct interned selectors.
+     * 
+     * @return number of interned selectors
+     */
+    public int size() {
+        return selectors.size();
+    }
+}
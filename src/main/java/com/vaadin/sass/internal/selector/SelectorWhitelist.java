@@ -0,0 +1,278 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.selector;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The class names, ids and element names used by an application, for removing
+ * the selectors of a style sheet that cannot match any element of the
+ * application.
+ * 
+ * A selector can match if every class, id and element name in it is used.
+ * Attribute selectors, pseudo-classes and pseudo-elements are assumed to be
+ * able to match. Element names are only checked if at least one element name
+ * has been added, as applications typically do not list the elements created
+ * by the widgets they use.
+ * 
+ * Class names and ids ending with "*" are prefixes: e.g. "v-*" keeps all
+ * classes starting with "v-".
+ * 
+ * @author Vaadin Ltd
+ */
+public class SelectorWhitelist {
+
+    private static final String[] SCANNED_EXTENSIONS = { ".html", ".htm",
+            ".java", ".js" };
+
+    private final Set<String> classNames = new HashSet<String>();
+    private final List<String> classPrefixes = new ArrayList<String>();
+    private final Set<String> ids = new HashSet<String>();
+    private final List<String> idPrefixes = new ArrayList<String>();
+    private final Set<String> elements = new HashSet<String>();
+
+    /**
+     * Adds a used class name or, if it ends with "*", a prefix of used class
+     * names.
+     * 
+     * @param className
+     *            class name without the leading period
+     */
+    public void addClassName(String className) {
+        add(className, classNames, classPrefixes);
+    }
+
+    /**
+     * Adds a used id or, if it ends with "*", a prefix of used ids.
+     * 
+     * @param id
+     *            id without the leading hash
+     */
+    public void addId(String id) {
+        add(id, ids, idPrefixes);
+    }
+
+    /**
+     * Adds a used element name.
+     * 
+     * @param element
+     *            element name, e.g. "div"
+     */
+    public void addElement(String element) {
+        elements.add(element.toLowerCase());
+    }
+
+    /**
+     * Adds a whitelist entry in selector syntax: ".name" for a class name,
+     * "#name" for an id and "name" for an element name.
+     * 
+     * @param entry
+     *            whitelist entry
+     */
+    public void add(String entry) {
+        entry = entry.trim();
+        if (entry.startsWith(".")) {
+            addClassName(entry.substring(1));
+        } else if (entry.startsWith("#")) {
+            addId(entry.substring(1));
+        } else if (entry.length() > 0) {
+            addElement(entry);
+        }
+    }
+
+    private static void add(String name, Set<String> names,
+            List<String> prefixes) {
+        if (name.endsWith("*")) {
+            prefixes.add(name.substring(0, name.length() - 1));
+        } else {
+            names.add(name);
+        }
+    }
+
+    /**
+     * Reads a whitelist file with one entry (see {@link #add(String)}) per
+     * line. Empty lines and lines starting with "//" are ignored.
+     * 
+     * @param file
+     *            whitelist file in UTF-8
+     * @return whitelist with the entries of the file
+     * @throws IOException
+     */
+    public static SelectorWhitelist read(File file) throws IOException {
+        SelectorWhitelist whitelist = new SelectorWhitelist();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().startsWith("//")) {
+                    whitelist.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return whitelist;
+    }
+
+    /**
+     * Scans the HTML, Java and JavaScript files in a directory and its
+     * subdirectories for the class names and ids they may use. Every
+     * identifier-like word in the files is taken to be a possible class name
+     * and id, so the whitelist errs on the side of keeping selectors. Names
+     * built at run time (e.g. by concatenation) are not found and should be
+     * added separately, e.g. as prefixes.
+     * 
+     * @param directory
+     *            directory to scan
+     * @return whitelist of the words in the files
+     * @throws IOException
+     */
+    public static SelectorWhitelist scan(File directory) throws IOException {
+        SelectorWhitelist whitelist = new SelectorWhitelist();
+        whitelist.scanDirectory(directory);
+        return whitelist;
+    }
+
+    private void scanDirectory(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list the files in " + directory);
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                scanDirectory(file);
+            } else if (isScanned(file.getName())) {
+                scanFile(file);
+            }
+        }
+    }
+
+    private static boolean isScanned(String fileName) {
+        String name = fileName.toLowerCase();
+        for (String extension : SCANNED_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scanFile(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                scanWords(line);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Adds every word (sequence of letters, digits, hyphens and underscores)
+     * in a text as a class name and an id.
+     * 
+     * @param text
+     *            text to scan
+     */
+    public void scanWords(String text) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length()
+                    && isWordChar(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = text.substring(start, i);
+                classNames.add(word);
+                ids.add(word);
+                start = -1;
+            }
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+    }
+
+    /**
+     * Returns whether a selector can match an element of the application.
+     * 
+     * @param selector
+     *            compiled selector
+     * @return false if the selector contains an unused class name, id or
+     *         element name
+     */
+    public boolean canMatch(Selector selector) {
+        for (SelectorSegment part : selector.getParts()) {
+            if (part instanceof SimpleSelectorSequence
+                    && !canMatch((SimpleSelectorSequence) part)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean canMatch(SimpleSelectorSequence sequence) {
+        for (SimpleSelector simple : sequence.getSimpleSelectors()) {
+            if (simple instanceof ClassSelector) {
+                String name = ((ClassSelector) simple).getClassValue()
+                        .toString();
+                if (!contains(name, classNames, classPrefixes)) {
+                    return false;
+                }
+            } else if (simple instanceof IdSelector) {
+                String id = ((IdSelector) simple).getValue().toString();
+                if (!contains(id, ids, idPrefixes)) {
+                    return false;
+                }
+            } else if (simple instanceof TypeSelector
+                    && !(simple instanceof UniversalSelector)
+                    && !elements.isEmpty()) {
+                String element = ((TypeSelector) simple).getValue()
+                        .toString();
+                if (!elements.contains(element.toLowerCase())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(String name, Set<String> names,
+            List<String> prefixes) {
+        if (names.contains(name)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
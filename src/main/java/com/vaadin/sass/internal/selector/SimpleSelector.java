@@ -32,19 +32,41 @@ import com.vaadin.sass.internal.ScssContext;
  */
 public abstract class SimpleSelector implements Serializable {
 
+    // cached hash code, 0 if not computed yet
+    private transient int hashCode;
+
     public SimpleSelector replaceVariables(ScssContext context) {
         return this;
     }
 
+    /**
+     * Returns whether the selector may contain interpolation. If not,
+     * {@link #replaceVariables(ScssContext)} does not need to be called.
+     * 
+     * @return false if the selector does not contain interpolation
+     */
+    public boolean containsInterpolation() {
+        return false;
+    }
+
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         return obj != null && getClass().equals(obj.getClass())
+                && hashCode() == obj.hashCode()
                 && toString().equals(obj.toString());
     }
 
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        int result = hashCode;
+        if (result == 0) {
+            result = toString().hashCode();
+            hashCode = result;
+        }
+        return result;
     }
 
 }
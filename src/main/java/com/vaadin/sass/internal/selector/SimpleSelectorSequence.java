@@ -32,6 +32,12 @@ public class SimpleSelectorSequence implements SelectorSegment {
 
     private List<SimpleSelector> selectors;
 
+    // whether any of the simple selectors contains interpolation
+    private boolean containsInterpolation;
+
+    // cached hash code, 0 if not computed yet
+    private transient int hashCode;
+
     public SimpleSelectorSequence() {
         selectors = Collections.emptyList();
     }
@@ -50,6 +56,7 @@ public class SimpleSelectorSequence implements SelectorSegment {
         // shared
         selectors = Collections.unmodifiableList(new ArrayList<SimpleSelector>(
                 seq));
+        containsInterpolation = containsInterpolation(selectors);
     }
 
     public SimpleSelectorSequence(SimpleSelectorSequence prior,
@@ -60,6 +67,7 @@ public class SimpleSelectorSequence implements SelectorSegment {
         }
         list.add(simpleSelector);
         selectors = Collections.unmodifiableList(list);
+        containsInterpolation = containsInterpolation(selectors);
     }
 
     public SimpleSelectorSequence(SimpleSelector simpleSelector,
@@ -70,6 +78,16 @@ public class SimpleSelectorSequence implements SelectorSegment {
             list.addAll(tail.selectors);
         }
         selectors = Collections.unmodifiableList(list);
+        containsInterpolation = containsInterpolation(selectors);
+    }
+
+    private static boolean containsInterpolation(List<SimpleSelector> list) {
+        for (SimpleSelector selector : list) {
+            if (selector.containsInterpolation()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -203,6 +221,11 @@ public class SimpleSelectorSequence implements SelectorSegment {
         return false;
     }
 
+    // unmodifiable list of the simple selectors
+    List<SimpleSelector> getSimpleSelectors() {
+        return selectors;
+    }
+
     public TypeSelector getTypeSelector() {
         SimpleSelector head = selectors.get(0);
         return head instanceof TypeSelector ? (TypeSelector) head : null;
@@ -237,6 +260,9 @@ public class SimpleSelectorSequence implements SelectorSegment {
      * universal in this, compare other kinds of simple selectors only.
      */
     public boolean subsumes(SimpleSelectorSequence that) {
+        if (this == that) {
+            return true;
+        }
         TypeSelector ts = getTypeSelector();
         if (ts == null || ts.equals(UniversalSelector.it)) {
             return that.getNonTypeSelectorList().containsAll(
@@ -245,10 +271,25 @@ public class SimpleSelectorSequence implements SelectorSegment {
         return that.selectors.containsAll(selectors);
     }
 
+    /**
+     * Returns whether any simple selector of the sequence may contain
+     * interpolation. This is determined when the sequence is created.
+     * 
+     * @return false if the sequence does not contain interpolation
+     */
+    public boolean containsInterpolation() {
+        return containsInterpolation;
+    }
+
     public SimpleSelectorSequence replaceVariables(ScssContext context) {
-        ArrayList<SimpleSelector> list = new ArrayList<SimpleSelector>();
+        if (!containsInterpolation) {
+            return this;
+        }
+        ArrayList<SimpleSelector> list = new ArrayList<SimpleSelector>(
+                selectors.size());
         for (SimpleSelector s : selectors) {
-            list.add(s.replaceVariables(context));
+            list.add(s.containsInterpolation() ? s.replaceVariables(context)
+                    : s);
         }
         return new SimpleSelectorSequence(list);
     }
@@ -289,15 +330,25 @@ public class SimpleSelectorSequence implements SelectorSegment {
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (obj == null || !obj.getClass().equals(getClass())) {
             return false;
         }
-        return selectors.equals(((SimpleSelectorSequence) obj).selectors);
+        SimpleSelectorSequence other = (SimpleSelectorSequence) obj;
+        return hashCode() == other.hashCode()
+                && selectors.equals(other.selectors);
     }
 
     @Override
     public int hashCode() {
-        return selectors.hashCode();
+        int result = hashCode;
+        if (result == 0) {
+            result = selectors.hashCode();
+            hashCode = result;
+        }
+        return result;
     }
 
 }
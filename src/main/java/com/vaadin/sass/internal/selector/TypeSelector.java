@@ -39,6 +39,11 @@ public class TypeSelector extends SimpleSelector {
         return localName.toString();
     }
 
+    @Override
+    public boolean containsInterpolation() {
+        return localName.containsInterpolation();
+    }
+
     @Override
     public TypeSelector replaceVariables(ScssContext context) {
         return new TypeSelector(localName.replaceVariables(context));
@@ -96,11 +96,21 @@ public class BlockNode extends Node implements IVariableNode {
             return;
         }
 
-        ArrayList<Selector> newSelectorList = new ArrayList<Selector>();
-        for (Selector s : selectorList) {
-            newSelectorList.add(s.replaceVariables(context));
+        ArrayList<Selector> newSelectorList = null;
+        for (int i = 0; i < selectorList.size(); i++) {
+            Selector s = selectorList.get(i);
+            Selector replaced = s.replaceVariables(context);
+            if (replaced != s && newSelectorList == null) {
+                // only copy the list if a selector contains interpolation
+                newSelectorList = new ArrayList<Selector>(selectorList);
+            }
+            if (newSelectorList != null) {
+                newSelectorList.set(i, replaced);
+            }
+        }
+        if (newSelectorList != null) {
+            setSelectorList(newSelectorList);
         }
-        setSelectorList(newSelectorList);
     }
 
     public String getSelectors() {
@@ -115,13 +125,21 @@ public class BlockNode extends Node implements IVariableNode {
     @Override
     public Collection<Node> traverse(ScssContext context) {
         ArrayList<Node> result = new ArrayList<Node>();
+        traverse(context, result);
+        return result;
+    }
+
+    @Override
+    public void traverse(ScssContext context, List<Node> output) {
+        int size = output.size();
         try {
             replaceVariables(context);
-            result.addAll(BlockNodeHandler.traverse(context, this));
+            setChildren(BlockNodeHandler.traverse(context, this, output));
         } catch (Exception e) {
+            // drop the partial output of the block
+            output.subList(size, output.size()).clear();
             SCSSErrorHandler.get().traverseError(e);
         }
-        return result;
     }
 
     private String buildString(boolean indent, BuildStringStrategy strategy) {
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.vaadin.sass.internal.DefinitionProfiler;
 import com.vaadin.sass.internal.Scope;
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.parser.ActualArgumentList;
@@ -38,6 +39,20 @@ public class FunctionCall {
 
     public static SassListItem evaluate(ScssContext context,
             FunctionDefNode def, LexicalUnitImpl invocation) {
+        DefinitionProfiler profiler = context.getDefinitionProfiler();
+        if (profiler == null) {
+            return evaluateCall(context, def, invocation);
+        }
+        profiler.enter(DefinitionProfiler.Kind.FUNCTION, def.getName());
+        try {
+            return evaluateCall(context, def, invocation);
+        } finally {
+            profiler.exit(0);
+        }
+    }
+
+    private static SassListItem evaluateCall(ScssContext context,
+            FunctionDefNode def, LexicalUnitImpl invocation) {
         ActualArgumentList invocationArglist = invocation.getParameterList()
                 .expandVariableArguments();
         SassListItem value = null;
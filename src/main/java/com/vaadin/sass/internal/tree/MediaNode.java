@@ -46,6 +46,26 @@ public class MediaNode extends Node {
         this.media = media;
     }
 
+    /**
+     * Returns the media query list as it is printed in the output, e.g.
+     * "screen, print".
+     * 
+     * @return media query list, empty string if there is none
+     */
+    public String getMediaQueryString() {
+        if (media == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < media.getLength(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(media.item(i));
+        }
+        return builder.toString();
+    }
+
     @Override
     public String printState() {
         return buildString(PRINT_STRATEGY, true);
@@ -64,14 +84,7 @@ public class MediaNode extends Node {
 
     private String buildString(BuildStringStrategy strategy, boolean indent) {
         StringBuilder builder = new StringBuilder("@media ");
-        if (media != null) {
-            for (int i = 0; i < media.getLength(); i++) {
-                if (i > 0) {
-                    builder.append(", ");
-                }
-                builder.append(media.item(i));
-            }
-        }
+        builder.append(getMediaQueryString());
         builder.append(" {\n");
         for (Node child : getChildren()) {
             builder.append('\t');
@@ -16,11 +16,16 @@
 
 package com.vaadin.sass.internal.tree;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.parser.ActualArgumentList;
@@ -36,7 +41,24 @@ public abstract class Node implements Serializable {
 
     private static final long serialVersionUID = 5914711715839294816L;
 
-    private ArrayList<Node> children = null;
+    /*
+     * The children are stored as an intrusive doubly linked list so that
+     * detaching, inserting after a node and replacing a node take constant
+     * time. getChildren() returns an immutable snapshot that is only rebuilt
+     * after the child list has been modified.
+     */
+    private transient Node firstChild;
+
+    private transient Node lastChild;
+
+    private transient Node previousSibling;
+
+    private transient Node nextSibling;
+
+    private transient int childCount;
+
+    // null if the child list has been modified after taking the snapshot
+    private transient List<Node> childrenSnapshot;
 
     private Node parentNode;
 
@@ -44,7 +66,7 @@ public abstract class Node implements Serializable {
     }
 
     protected Node(Node nodeToCopy) {
-        if (nodeToCopy != null && nodeToCopy.children != null) {
+        if (nodeToCopy != null && nodeToCopy.firstChild != null) {
             setChildren(nodeToCopy.copyChildren());
         }
     }
@@ -58,9 +80,12 @@ public abstract class Node implements Serializable {
      *            replacing node
      */
     public void replaceNodeAt(int index, Node newChild) {
-        newChild.removeFromParent();
-        newChild.parentNode = this;
-        children.set(index, newChild);
+        Node oldChild = getChildren().get(index);
+        if (oldChild != newChild) {
+            newChild.removeFromParent();
+            linkAfter(oldChild, newChild);
+            unlink(oldChild);
+        }
     }
 
     /**
@@ -72,28 +97,27 @@ public abstract class Node implements Serializable {
      *            replacing nodes, can be an empty collection
      */
     public void replaceNode(Node oldChild, Collection<? extends Node> newNodes) {
-        appendAfterNode(oldChild, newNodes);
-        if (!newNodes.contains(oldChild)) {
-            oldChild.removeFromParent();
-        }
-    }
-
-    private void appendAfterNode(Node after, Collection<? extends Node> newNodes) {
+        boolean keepOldChild = false;
         if (newNodes != null && !newNodes.isEmpty()) {
-            // try to find last node with "after" as its original node and
-            // append after it
-            for (int i = getChildren(false).size() - 1; i >= 0; --i) {
-                Node node = getChildren(false).get(i);
-                if (node == after) {
-                    getChildren(true).addAll(i + 1, newNodes);
-                    for (final Node child : newNodes) {
-                        child.removeFromParent();
-                        child.parentNode = this;
-                    }
-                    return;
+            if (oldChild.parentNode != this) {
+                throw new ParseException("after-node was not found", oldChild);
+            }
+            // insert the new nodes after the old child in order, the old
+            // child itself can also be among them
+            Node previous = oldChild;
+            for (Node child : newNodes) {
+                if (child == oldChild) {
+                    keepOldChild = true;
+                }
+                if (child != previous) {
+                    child.removeFromParent();
+                    linkAfter(previous, child);
+                    previous = child;
                 }
             }
-            throw new ParseException("after-node was not found", after);
+        }
+        if (!keepOldChild) {
+            oldChild.removeFromParent();
         }
     }
 
@@ -107,9 +131,8 @@ public abstract class Node implements Serializable {
     // TODO this should be avoided except when constructing the node tree
     public void appendChild(Node node) {
         if (node != null) {
-            getChildren(true).add(node);
             node.removeFromParent();
-            node.parentNode = this;
+            linkAfter(lastChild, node);
         }
     }
 
@@ -117,34 +140,142 @@ public abstract class Node implements Serializable {
      * Remove this node from its parent (if any).
      */
     private void removeFromParent() {
-        if (getParentNode() != null) {
-            getParentNode().getChildren(true).remove(this);
-            parentNode = null;
+        if (parentNode != null) {
+            parentNode.unlink(this);
         }
     }
 
+    /**
+     * Returns the children of this node. The returned list is an unmodifiable
+     * snapshot: it is not updated when the children are modified, so it can
+     * be iterated while modifying the child list.
+     * 
+     * @return unmodifiable list of the children
+     */
     public List<Node> getChildren() {
-        return Collections.unmodifiableList(getChildren(false));
+        if (childrenSnapshot == null) {
+            if (childCount == 0) {
+                childrenSnapshot = Collections.emptyList();
+            } else {
+                Node[] array = new Node[childCount];
+                int i = 0;
+                for (Node child = firstChild; child != null; child = child.nextSibling) {
+                    array[i++] = child;
+                }
+                childrenSnapshot = new NodeList(array);
+            }
+        }
+        return childrenSnapshot;
     }
 
     // avoid calling this method whenever possible
     @Deprecated
     protected void setChildren(Collection<Node> newChildren) {
-        children = new ArrayList<Node>(newChildren);
-        // add new children
-        for (Node child : newChildren) {
-            child.parentNode = this;
+        Node child = firstChild;
+        while (child != null) {
+            Node next = child.nextSibling;
+            child.previousSibling = null;
+            child.nextSibling = null;
+            child.parentNode = null;
+            child = next;
+        }
+        firstChild = null;
+        lastChild = null;
+        childCount = 0;
+        childrenSnapshot = null;
+        for (Node newChild : newChildren) {
+            newChild.removeFromParent();
+            linkAfter(lastChild, newChild);
         }
     }
 
-    private List<Node> getChildren(boolean create) {
-        if (children == null && create) {
-            children = new ArrayList<Node>();
+    /**
+     * Links a detached node as a child of this node after the given child.
+     * 
+     * @param previous
+     *            child after which to link, null to link as the first child
+     * @param node
+     *            detached node
+     */
+    private void linkAfter(Node previous, Node node) {
+        Node next = previous != null ? previous.nextSibling : firstChild;
+        node.previousSibling = previous;
+        node.nextSibling = next;
+        if (previous != null) {
+            previous.nextSibling = node;
+        } else {
+            firstChild = node;
         }
-        if (children != null) {
-            return children;
+        if (next != null) {
+            next.previousSibling = node;
         } else {
-            return Collections.emptyList();
+            lastChild = node;
+        }
+        node.parentNode = this;
+        childCount++;
+        childrenSnapshot = null;
+    }
+
+    /**
+     * Detaches a child of this node.
+     * 
+     * @param node
+     *            child node
+     */
+    private void unlink(Node node) {
+        if (node.previousSibling != null) {
+            node.previousSibling.nextSibling = node.nextSibling;
+        } else {
+            firstChild = node.nextSibling;
+        }
+        if (node.nextSibling != null) {
+            node.nextSibling.previousSibling = node.previousSibling;
+        } else {
+            lastChild = node.previousSibling;
+        }
+        node.previousSibling = null;
+        node.nextSibling = null;
+        node.parentNode = null;
+        childCount--;
+        childrenSnapshot = null;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(childCount);
+        for (Node child = firstChild; child != null; child = child.nextSibling) {
+            out.writeObject(child);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            linkAfter(lastChild, (Node) in.readObject());
+        }
+    }
+
+    /**
+     * Immutable snapshot of a child list.
+     */
+    private static class NodeList extends AbstractList<Node> implements
+            RandomAccess {
+        private final Node[] nodes;
+
+        public NodeList(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public Node get(int index) {
+            return nodes[index];
+        }
+
+        @Override
+        public int size() {
+            return nodes.length;
         }
     }
 
@@ -163,6 +294,21 @@ public abstract class Node implements Serializable {
      */
     public abstract Collection<Node> traverse(ScssContext context);
 
+    /**
+     * Traverses the node and appends the nodes replacing it to the given list.
+     * This is equivalent to adding the result of
+     * {@link #traverse(ScssContext)} to the list, but lets nodes that expand
+     * to many nodes append them directly without intermediate collections.
+     * 
+     * @param context
+     *            current compilation context
+     * @param output
+     *            list to which to append the nodes replacing the current node
+     */
+    public void traverse(ScssContext context, List<Node> output) {
+        output.addAll(traverse(context));
+    }
+
     /**
      * Prints out the current state of the node tree. Will return SCSS before
      * compile and CSS after.
@@ -200,11 +346,11 @@ public abstract class Node implements Serializable {
 
     // to be used primarily from inside the class Node
     protected Collection<Node> copyChildren() {
-        if (getChildren(false).isEmpty()) {
+        if (firstChild == null) {
             return Collections.emptyList();
         }
-        ArrayList<Node> result = new ArrayList<Node>();
-        for (Node child : getChildren(false)) {
+        ArrayList<Node> result = new ArrayList<Node>(childCount);
+        for (Node child = firstChild; child != null; child = child.nextSibling) {
             result.add(child.copy());
         }
         return result;
@@ -222,9 +368,11 @@ public abstract class Node implements Serializable {
                 context.openVariableScope();
             }
             try {
-                ArrayList<Node> result = new ArrayList<Node>();
-                for (Node child : new ArrayList<Node>(children)) {
-                    result.addAll(child.traverse(context));
+                ArrayList<Node> result = new ArrayList<Node>(children.size());
+                // the snapshot is not affected by modifications of the
+                // children during traversal
+                for (Node child : children) {
+                    child.traverse(context, result);
                 }
                 // TODO this ugly but hard to eliminate as long as some classes
                 // use traverseChildren() for its side-effects
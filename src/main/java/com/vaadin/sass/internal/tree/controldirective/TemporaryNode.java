@@ -18,6 +18,7 @@ package com.vaadin.sass.internal.tree.controldirective;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.tree.Node;
@@ -65,10 +66,10 @@ public class TemporaryNode extends Node {
     public Collection<Node> traverse(ScssContext context) {
         // this is like traverseChildren(false) except that this does not modify
         // the child list of the node
-        ArrayList<Node> children = new ArrayList<Node>(getChildren());
-        ArrayList<Node> result = new ArrayList<Node>();
+        List<Node> children = getChildren();
+        ArrayList<Node> result = new ArrayList<Node>(children.size());
         for (Node node : children) {
-            result.addAll(node.traverse(context));
+            node.traverse(context, result);
         }
         return result;
     }
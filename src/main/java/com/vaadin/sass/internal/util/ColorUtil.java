@@ -33,30 +33,34 @@ public class ColorUtil {
 
     private static final Pattern HEX_COLOR_PATTERN = Pattern
             .compile("#([0-9a-fA-F]{3}|[0-9a-fA-F]{6})");
-    private static Map<String, String> colorNameToHex = new HashMap<String, String>();
-    private static Map<String, String> hexToColorName = new HashMap<String, String>();
-
-    static {
-        colorNameToHex.put("aqua", "#00ffff");
-        colorNameToHex.put("black", "#000000");
-        colorNameToHex.put("blue", "#0000ff");
-        colorNameToHex.put("fuchsia", "#ff00ff");
-        colorNameToHex.put("gray", "#808080");
-        colorNameToHex.put("green", "#008000");
-        colorNameToHex.put("lime", "#00ff00");
-        colorNameToHex.put("maroon", "#800000");
-        colorNameToHex.put("navy", "#000080");
-        colorNameToHex.put("olive", "#808000");
-        colorNameToHex.put("orange", "#ffa500");
-        colorNameToHex.put("purple", "#800080");
-        colorNameToHex.put("red", "#ff0000");
-        colorNameToHex.put("silver", "#c0c0c0");
-        colorNameToHex.put("teal", "#008080");
-        colorNameToHex.put("white", "#ffffff");
-        colorNameToHex.put("yellow", "#ffff00");
-
-        for (Entry<String, String> entry : colorNameToHex.entrySet()) {
-            hexToColorName.put(entry.getValue(), entry.getKey());
+
+    // color name tables, initialized when first needed
+    private static class ColorNames {
+        private static final Map<String, String> colorNameToHex = new HashMap<String, String>();
+        private static final Map<String, String> hexToColorName = new HashMap<String, String>();
+
+        static {
+            colorNameToHex.put("aqua", "#00ffff");
+            colorNameToHex.put("black", "#000000");
+            colorNameToHex.put("blue", "#0000ff");
+            colorNameToHex.put("fuchsia", "#ff00ff");
+            colorNameToHex.put("gray", "#808080");
+            colorNameToHex.put("green", "#008000");
+            colorNameToHex.put("lime", "#00ff00");
+            colorNameToHex.put("maroon", "#800000");
+            colorNameToHex.put("navy", "#000080");
+            colorNameToHex.put("olive", "#808000");
+            colorNameToHex.put("orange", "#ffa500");
+            colorNameToHex.put("purple", "#800080");
+            colorNameToHex.put("red", "#ff0000");
+            colorNameToHex.put("silver", "#c0c0c0");
+            colorNameToHex.put("teal", "#008080");
+            colorNameToHex.put("white", "#ffffff");
+            colorNameToHex.put("yellow", "#ffff00");
+
+            for (Entry<String, String> entry : colorNameToHex.entrySet()) {
+                hexToColorName.put(entry.getValue(), entry.getKey());
+            }
         }
     }
 
@@ -151,7 +155,7 @@ public class ColorUtil {
      */
     public static boolean isColorName(LexicalUnitImpl unit) {
         return unit.getLexicalUnitType() == LexicalUnit.SAC_IDENT
-                && colorNameToHex.containsKey(unit.getStringValue());
+                && ColorNames.colorNameToHex.containsKey(unit.getStringValue());
     }
 
     /**
@@ -235,8 +239,8 @@ public class ColorUtil {
      */
     public static String rgbToColorString(int[] rgb) {
         String colorString = rgbToHexColor(rgb, 6);
-        if (hexToColorName.containsKey(colorString)) {
-            colorString = hexToColorName.get(colorString);
+        if (ColorNames.hexToColorName.containsKey(colorString)) {
+            colorString = ColorNames.hexToColorName.get(colorString);
         }
         return colorString;
     }
@@ -375,7 +379,8 @@ public class ColorUtil {
      * @return RGB components
      */
     private static int[] colorNameToRgb(LexicalUnitImpl color) {
-        return hexColorToRgb(colorNameToHex.get(color.getStringValue()));
+        return hexColorToRgb(ColorNames.colorNameToHex.get(color
+                .getStringValue()));
     }
 
     private static String rgbToHexColor(int[] rgb, int length) {
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.util;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Locale independent formatting of non-integer numbers in CSS output. The
+ * output is the same as with the DecimalFormat pattern "0.0####" and '.' as
+ * the decimal separator: the value is rounded half-even to five decimals and
+ * trailing zeros are removed except for the first decimal.
+ * 
+ * Unlike DecimalFormat, the methods of this class are thread safe and do not
+ * allocate intermediate objects for values of normal magnitude.
+ * 
+ * @author Vaadin Ltd
+ */
+public class CssNumberFormat {
+
+    private static final int DECIMALS = 5;
+
+    private static final long SCALE = 100000L;
+
+    private CssNumberFormat() {
+    }
+
+    /**
+     * Formats a float value with one to five decimals.
+     * 
+     * @param value
+     *            value to format
+     * @return formatted value
+     */
+    public static String format(float value) {
+        return append(new StringBuilder(12), value).toString();
+    }
+
+    /**
+     * Appends a float value with one to five decimals to a string builder.
+     * 
+     * @param builder
+     *            string builder to append to
+     * @param value
+     *            value to format
+     * @return the string builder
+     */
+    public static StringBuilder append(StringBuilder builder, float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int exponent = (bits >> 23) & 0xff;
+        if (exponent == 0xff) {
+            // NaN and infinities
+            return builder.append(createFallbackFormat().format(value));
+        }
+        long mantissa = bits & 0x7fffff;
+        if (exponent == 0) {
+            // subnormal
+            exponent = 1;
+        } else {
+            mantissa |= 0x800000;
+        }
+        // value == mantissa * 2^shift
+        int shift = exponent - 150;
+
+        long integerPart;
+        long fraction;
+        if (shift >= 0) {
+            if (shift > 29) {
+                // DecimalFormat only prints 17 significant digits of values
+                // of 2^53 and above
+                return builder.append(createFallbackFormat().format(value));
+            }
+            integerPart = mantissa << shift;
+            fraction = 0;
+        } else {
+            long scaled = roundHalfEven(mantissa * SCALE, -shift);
+            integerPart = scaled / SCALE;
+            fraction = scaled % SCALE;
+        }
+
+        if (bits < 0) {
+            builder.append('-');
+        }
+        builder.append(integerPart).append('.');
+        if (fraction == 0) {
+            return builder.append('0');
+        }
+        int decimals = DECIMALS;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            decimals--;
+        }
+        // leading zeros of the fraction
+        long limit = 1;
+        for (int i = 1; i < decimals; i++) {
+            limit *= 10;
+        }
+        while (fraction < limit) {
+            builder.append('0');
+            limit /= 10;
+        }
+        return builder.append(fraction);
+    }
+
+    /**
+     * Divides a non-negative value by 2^shift, rounding half to even.
+     */
+    private static long roundHalfEven(long value, int shift) {
+        if (shift > 62) {
+            // value < 2^41, so the result is less than one half
+            return 0;
+        }
+        long result = value >> shift;
+        long remainder = value & ((1L << shift) - 1);
+        long half = 1L << (shift - 1);
+        if (remainder > half || (remainder == half && (result & 1) != 0)) {
+            result++;
+        }
+        return result;
+    }
+
+    private static DecimalFormat createFallbackFormat() {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+        symbols.setDecimalSeparator('.');
+        return new DecimalFormat("0.0####", symbols);
+    }
+}
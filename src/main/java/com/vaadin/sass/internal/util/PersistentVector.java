@@ -0,0 +1,163 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.util;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable list that supports appending in amortized constant time by sharing
+ * structure with the list it was derived from.
+ * 
+ * All versions derived from each other by appending share one backing array.
+ * A version whose size equals the number of elements used in the array may
+ * append in place; appending to any other version (a branch) copies its
+ * elements to a new array. Building a list one element at a time, as in
+ * <code>$list: append($list, $item)</code> inside a loop, therefore takes
+ * linear time in total instead of quadratic time.
+ * 
+ * @author Vaadin Ltd
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements
+        RandomAccess, Serializable {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private static final PersistentVector<Object> EMPTY = new PersistentVector<Object>(
+            new Buffer(new Object[0], 0), 0);
+
+    /**
+     * Backing array shared by several versions of a list. Only the elements at
+     * indices below {@link #used} have been published; the slot at index
+     * {@link #used} belongs to whichever version claims it first.
+     */
+    private static final class Buffer {
+        private final Object[] elements;
+        private final AtomicInteger used;
+
+        private Buffer(Object[] elements, int used) {
+            this.elements = elements;
+            this.used = new AtomicInteger(used);
+        }
+    }
+
+    private final transient Buffer buffer;
+    private final int size;
+
+    private PersistentVector(Buffer buffer, int size) {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * Returns an empty vector.
+     * 
+     * @return empty vector
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Returns a vector containing the elements of a list. If the list already
+     * is a vector, it is returned as such.
+     * 
+     * @param list
+     *            list whose elements to use, not null
+     * @return vector containing the elements of list
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> of(List<? extends E> list) {
+        if (list instanceof PersistentVector) {
+            return (PersistentVector<E>) list;
+        }
+        return PersistentVector.<E> empty().appendAll(list);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size);
+        }
+        return (E) buffer.elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a vector containing the elements of this vector followed by
+     * element. This vector is not modified.
+     * 
+     * @param element
+     *            element to append
+     * @return new vector with one more element
+     */
+    public PersistentVector<E> append(E element) {
+        Buffer target = claim(1);
+        target.elements[size] = element;
+        return new PersistentVector<E>(target, size + 1);
+    }
+
+    /**
+     * Returns a vector containing the elements of this vector followed by the
+     * elements of a collection. This vector is not modified.
+     * 
+     * @param collection
+     *            elements to append, not null
+     * @return new vector with the elements appended
+     */
+    public PersistentVector<E> appendAll(Collection<? extends E> collection) {
+        Object[] added = collection.toArray();
+        if (added.length == 0) {
+            return this;
+        }
+        Buffer target = claim(added.length);
+        System.arraycopy(added, 0, target.elements, size, added.length);
+        return new PersistentVector<E>(target, size + added.length);
+    }
+
+    /**
+     * Returns a buffer that has room for count elements after the elements of
+     * this vector and whose slots for them are reserved for the caller. The
+     * current buffer is used if this vector is its latest version and it has
+     * enough room, otherwise the elements are copied to a new buffer.
+     */
+    private Buffer claim(int count) {
+        int newSize = size + count;
+        if (newSize <= buffer.elements.length
+                && buffer.used.compareAndSet(size, newSize)) {
+            return buffer;
+        }
+        Object[] elements = new Object[Math.max(MIN_CAPACITY, 2 * newSize)];
+        System.arraycopy(buffer.elements, 0, elements, 0, size);
+        return new Buffer(elements, newSize);
+    }
+
+    private Object writeReplace() {
+        return new ArrayList<E>(this);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output stream that writes everything written to it to several output
+ * streams.
+ * 
+ * @author Vaadin Ltd
+ */
+public class TeeOutputStream extends OutputStream {
+
+    private final List<OutputStream> outputs;
+
+    public TeeOutputStream(List<? extends OutputStream> outputs) {
+        this.outputs = new ArrayList<OutputStream>(outputs);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        for (OutputStream out : outputs) {
+            out.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (OutputStream out : outputs) {
+            out.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (OutputStream out : outputs) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Closes all the output streams, even if closing some of them fails.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (OutputStream out : outputs) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
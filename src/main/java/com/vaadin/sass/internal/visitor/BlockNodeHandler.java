@@ -17,8 +17,8 @@
 package com.vaadin.sass.internal.visitor;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.ScssStylesheet;
@@ -47,54 +47,62 @@ import com.vaadin.sass.internal.tree.Node;
  */
 public class BlockNodeHandler {
 
-    public static Collection<Node> traverse(ScssContext context, BlockNode node) {
-
-        if (node.getChildren().size() == 0) {
+    /**
+     * Flattens a block, appending it and its nested blocks to the output list
+     * in the order in which they appear in the resulting CSS. The block itself
+     * is reused for its remaining non-block children and is only appended if
+     * it has any.
+     * 
+     * @param context
+     *            current compilation context
+     * @param node
+     *            block to traverse
+     * @param output
+     *            list to which to append the resulting blocks
+     * @return the new children of the block, the caller should set them as
+     *         the children of the block
+     */
+    public static List<Node> traverse(ScssContext context, BlockNode node,
+            List<Node> output) {
+        List<Node> children = node.getChildren();
+        if (children.isEmpty()) {
             return Collections.emptyList();
         }
 
-        ArrayList<Node> result = new ArrayList<Node>();
-        updateSelectors(node);
-
-        if (!node.getChildren().isEmpty()) {
-            context.openVariableScope();
-            try {
-                ArrayList<Node> newChildren = new ArrayList<Node>();
-                for (Node child : new ArrayList<Node>(node.getChildren())) {
-                    if (child instanceof BlockNode) {
-                        ((BlockNode) child).setParentSelectors(node
-                                .getSelectorList());
-                        result.addAll(child.traverse(context));
-                    } else {
-                        Collection<Node> childTraversed = child
-                                .traverse(context);
-                        for (Node n : childTraversed) {
-                            if (n instanceof BlockNode) {
-                                // already traversed
-                                result.add(n);
-                            } else {
-                                newChildren.add(n);
-                            }
+        updateSelectors(context, node);
+
+        // reserve the position of the block before its nested blocks
+        int position = output.size();
+        output.add(node);
+        ArrayList<Node> newChildren = new ArrayList<Node>(children.size());
+        context.openVariableScope();
+        try {
+            for (Node child : children) {
+                if (child instanceof BlockNode) {
+                    ((BlockNode) child).setParentSelectors(node
+                            .getSelectorList());
+                    child.traverse(context, output);
+                } else {
+                    for (Node n : child.traverse(context)) {
+                        if (n instanceof BlockNode) {
+                            // already traversed
+                            output.add(n);
+                        } else {
+                            newChildren.add(n);
                         }
                     }
                 }
-                // add the node with the remaining non-block children at the
-                // beginning
-                if (!newChildren.isEmpty()) {
-                    BlockNode newNode = new BlockNode(new ArrayList<Selector>(
-                            node.getSelectorList()), newChildren);
-                    newNode.setParentSelectors(node.getParentSelectors());
-                    result.add(0, newNode);
-                }
-            } finally {
-                context.closeVariableScope();
             }
+        } finally {
+            context.closeVariableScope();
         }
-
-        return result;
+        if (newChildren.isEmpty()) {
+            output.remove(position);
+        }
+        return newChildren;
     }
 
-    private static void updateSelectors(BlockNode node) {
+    private static void updateSelectors(ScssContext context, BlockNode node) {
         if (node.getNormalParentNode() instanceof BlockNode) {
             replaceParentSelectors(node);
 
@@ -104,6 +112,9 @@ public class BlockNodeHandler {
                     + " the character will be removed:\n" + node);
             removeParentReference(node);
         }
+        // share equal selectors between blocks
+        node.setSelectorList(context.getSelectorInterner().intern(
+                node.getSelectorList()));
     }
 
     /**
@@ -22,9 +22,11 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import com.vaadin.sass.internal.CompilerEvents;
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.parser.ParseException;
 import com.vaadin.sass.internal.selector.Selector;
+import com.vaadin.sass.internal.selector.SelectorInterner;
 import com.vaadin.sass.internal.selector.SelectorSet;
 import com.vaadin.sass.internal.selector.SimpleSelectorSequence;
 import com.vaadin.sass.internal.tree.BlockNode;
@@ -63,23 +65,25 @@ public class ExtendNodeHandler {
 
     public static void modifyTree(ScssContext context, Node node)
             throws Exception {
-        Iterator<Node> nodeIt = new ArrayList<Node>(node.getChildren())
-                .iterator();
-
-        while (nodeIt.hasNext()) {
-            final Node child = nodeIt.next();
+        Object event = CompilerEvents.get().beginExtend();
+        int selectorsIn = 0;
+        int selectorsOut = 0;
+        // the children are a snapshot, so they can be modified in the loop
+        for (final Node child : node.getChildren()) {
 
             if (child instanceof BlockNode) {
                 BlockNode blockNode = (BlockNode) child;
                 // need a copy as the selector list is modified below
                 List<Selector> selectorList = new ArrayList<Selector>(
                         blockNode.getSelectorList());
+                selectorsIn += selectorList.size();
                 SelectorSet newSelectors = new SelectorSet();
                 for (Selector selector : selectorList) {
                     // keep order while avoiding duplicates
                     newSelectors.add(selector);
                     newSelectors.addAll(createSelectorsForExtensions(selector,
-                            context.getExtensions()));
+                            context.getExtensions(),
+                            context.getSelectorInterner()));
                 }
 
                 // remove all placeholder selectors
@@ -99,8 +103,10 @@ public class ExtendNodeHandler {
                     blockNode.setSelectorList(new ArrayList<Selector>(
                             newSelectors));
                 }
+                selectorsOut += newSelectors.size();
             }
         }
+        CompilerEvents.get().endExtend(event, selectorsIn, selectorsOut);
 
     }
 
@@ -127,9 +133,28 @@ public class ExtendNodeHandler {
      */
     public static SelectorSet createSelectorsForExtensions(Selector target,
             Iterable<Extension> extendsMap) {
+        return createSelectorsForExtensions(target, extendsMap,
+                new SelectorInterner());
+    }
+
+    /**
+     * As {@link #createSelectorsForExtensions(Selector, Iterable)}, but the
+     * generated selectors are canonical instances from the given interner.
+     * 
+     * @param target
+     *            the selector to match
+     * @param extendsMap
+     *            mapping from the simple selector sequence of the
+     *            extend-selector to an extending selector
+     * @param interner
+     *            table of canonical selectors of the compilation
+     * @return the generated selectors
+     */
+    public static SelectorSet createSelectorsForExtensions(Selector target,
+            Iterable<Extension> extendsMap, SelectorInterner interner) {
         SelectorSet newSelectors = new SelectorSet();
         createSelectorsForExtensionsRecursively(target, newSelectors,
-                extendsMap);
+                extendsMap, interner);
         return newSelectors.eliminateRedundantSelectors();
     }
 
@@ -138,12 +163,13 @@ public class ExtendNodeHandler {
      * efficiency. Recursively applied to generated selectors.
      */
     private static void createSelectorsForExtensionsRecursively(
-            Selector target, SelectorSet current, Iterable<Extension> extendsMap) {
+            Selector target, SelectorSet current,
+            Iterable<Extension> extendsMap, SelectorInterner interner) {
 
         SelectorSet newSelectors = new SelectorSet();
 
         for (Extension extension : extendsMap) {
-            Selector replaced = target.replace(extension);
+            Selector replaced = interner.intern(target.replace(extension));
             boolean newSelector = current.add(replaced);
             if (newSelector && !replaced.equals(target)) {
                 newSelectors.add(replaced);
@@ -152,7 +178,7 @@ public class ExtendNodeHandler {
 
         for (Selector newSelector : newSelectors) {
             createSelectorsForExtensionsRecursively(newSelector, current,
-                    extendsMap);
+                    extendsMap, interner);
         }
 
     }
@@ -29,6 +29,7 @@ import org.w3c.css.sac.CSSException;
 
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.ScssStylesheet;
+import com.vaadin.sass.internal.StylesheetCache;
 import com.vaadin.sass.internal.handler.SCSSDocumentHandlerImpl;
 import com.vaadin.sass.internal.handler.SCSSErrorHandler;
 import com.vaadin.sass.internal.parser.ParseException;
@@ -65,8 +66,14 @@ public class ImportNodeHandler {
             try {
                 // set parent's charset to imported node.
 
-                imported = ScssStylesheet.get(importNode.getUri(), styleSheet,
-                        new SCSSDocumentHandlerImpl(), SCSSErrorHandler.get());
+                StylesheetCache cache = context.getStylesheetCache();
+                if (cache != null) {
+                    imported = cache.get(importNode.getUri(), styleSheet);
+                } else {
+                    imported = ScssStylesheet.get(importNode.getUri(),
+                            styleSheet, new SCSSDocumentHandlerImpl(),
+                            SCSSErrorHandler.get());
+                }
                 if (imported == null) {
                     SCSSErrorHandler.get().traverseError(
                             "Import '" + importNode.getUri() + "' in '"
@@ -74,6 +81,9 @@ public class ImportNodeHandler {
                                     + "' could not be found");
                     return Collections.emptyList();
                 }
+                // cached copies may have been parsed for another compilation
+                imported.setCompilationListener(styleSheet
+                        .getCompilationListener());
 
                 String prefix = styleSheet.getPrefix()
                         + getUrlPrefix(importNode.getUri());
@@ -97,6 +107,9 @@ public class ImportNodeHandler {
                 Collection<Node> result = tempParent.traverseChildren(context);
 
                 styleSheet.addSourceUris(imported.getSourceUris());
+                if (styleSheet == importNode.getParentNode()) {
+                    styleSheet.setImportOrigin(result, importNode.getUri());
+                }
                 return result;
             }
         } else {
@@ -126,16 +139,14 @@ public class ImportNodeHandler {
     private static void updateUrlInImportedSheet(Node node, String prefix,
             ScssStylesheet styleSheet, ScssContext context) {
         ScssContext.UrlMode urlMode = context.getUrlMode();
-        List<Node> children = node.getChildren();
-        for (int i = 0; i < children.size(); i++) {
-            Node child = children.get(i);
+        for (Node child : node.getChildren()) {
             Node newChild = child;
             if (child instanceof NodeWithUrlContent
                     && (urlMode.equals(ScssContext.UrlMode.RELATIVE) || (urlMode
                             .equals(ScssContext.UrlMode.MIXED) && child instanceof RuleNode))) {
                 newChild = (Node) ((NodeWithUrlContent) child)
                         .updateUrl(prefix);
-                node.replaceNodeAt(i, newChild);
+                node.replaceNode(child, Collections.singletonList(newChild));
             } else if (child instanceof ImportNode) {
                 ((ImportNode) child).setStylesheet(styleSheet);
             }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.visitor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.vaadin.sass.internal.tree.BlockNode;
+import com.vaadin.sass.internal.tree.CommentNode;
+import com.vaadin.sass.internal.tree.FontFaceNode;
+import com.vaadin.sass.internal.tree.KeyframesNode;
+import com.vaadin.sass.internal.tree.MediaNode;
+import com.vaadin.sass.internal.tree.Node;
+import com.vaadin.sass.internal.tree.RuleNode;
+
+/**
+ * Output optimization that merges @media blocks with identical media queries.
+ * 
+ * Consecutive @media blocks with the same query are always merged. A later
+ * block is also merged into an earlier one with the same query when moving its
+ * contents before the nodes in between cannot change the cascade, i.e. when
+ * the nodes in between set none of the properties (or related shorthand and
+ * longhand properties) that the later block sets. Only rule blocks, @media
+ * blocks, comments, @font-face and @keyframes are moved over; any other node
+ * ends the search for merge targets.
+ * 
+ * Mixins and nested @media rules typically leave many small @media blocks with
+ * the same query in the compiled style sheet.
+ * 
+ * @author Vaadin Ltd
+ */
+public class MediaMergeHandler {
+
+    // stands for properties that may interact with any other property
+    private static final String ANY_PROPERTY = "*";
+
+    // property families whose shorthands set properties in another family,
+    // properties that are aliases of properties in another family and logical
+    // properties that set the same value as physical ones in another family
+    private static final Map<String, String> FAMILY_ALIASES = new HashMap<String, String>();
+    static {
+        FAMILY_ALIASES.put("line", "font");
+        FAMILY_ALIASES.put("top", "inset");
+        FAMILY_ALIASES.put("right", "inset");
+        FAMILY_ALIASES.put("bottom", "inset");
+        FAMILY_ALIASES.put("left", "inset");
+        FAMILY_ALIASES.put("width", "size");
+        FAMILY_ALIASES.put("height", "size");
+        FAMILY_ALIASES.put("min", "size");
+        FAMILY_ALIASES.put("max", "size");
+        FAMILY_ALIASES.put("block", "size");
+        FAMILY_ALIASES.put("inline", "size");
+        FAMILY_ALIASES.put("place", "align");
+        FAMILY_ALIASES.put("justify", "align");
+        FAMILY_ALIASES.put("columns", "column");
+        FAMILY_ALIASES.put("gap", "column");
+        FAMILY_ALIASES.put("row", "column");
+        FAMILY_ALIASES.put("grid", "column");
+        FAMILY_ALIASES.put("word-wrap", "overflow");
+        FAMILY_ALIASES.put("page", "break");
+        FAMILY_ALIASES.put("all", ANY_PROPERTY);
+    }
+
+    /**
+     * An earlier @media block that later blocks with the same query can be
+     * merged into, with the property families set between it and the current
+     * position.
+     */
+    private static class MergeTarget {
+        private final MediaNode node;
+        private final Set<String> families = new HashSet<String>();
+
+        private MergeTarget(MediaNode node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * Merges @media blocks with identical media queries among the children of
+     * a node and, recursively, within @media blocks.
+     * 
+     * @param node
+     *            compiled style sheet or other parent node
+     * @return number of bytes (UTF-8) the merging saved in the unminified
+     *         output
+     */
+    public static long mergeMediaBlocks(Node node) {
+        long saved = 0;
+        Map<String, MergeTarget> targets = new LinkedHashMap<String, MergeTarget>();
+        for (Node child : node.getChildren()) {
+            Set<String> families;
+            // the node (child or merge target) now containing the properties
+            Node container = child;
+            if (child instanceof MediaNode) {
+                MediaNode media = (MediaNode) child;
+                String query = media.getMediaQueryString();
+                families = getPropertyFamilies(media);
+                MergeTarget target = targets.get(query);
+                if (target != null && !conflicts(target.families, families)) {
+                    for (Node mediaChild : media.getChildren()) {
+                        target.node.appendChild(mediaChild);
+                    }
+                    node.replaceNode(media, Collections.<Node> emptyList());
+                    saved += getHeaderLength(query)
+                            + OutputSize.SEPARATOR_LENGTH;
+                    container = target.node;
+                } else {
+                    targets.put(query, new MergeTarget(media));
+                }
+            } else if (child instanceof BlockNode) {
+                families = getPropertyFamilies(child);
+            } else if (child instanceof CommentNode
+                    || child instanceof FontFaceNode
+                    || child instanceof KeyframesNode) {
+                continue;
+            } else {
+                targets.clear();
+                continue;
+            }
+            for (MergeTarget target : targets.values()) {
+                if (target.node != container) {
+                    target.families.addAll(families);
+                }
+            }
+        }
+        for (Node child : node.getChildren()) {
+            if (child instanceof MediaNode) {
+                saved += mergeMediaBlocks(child);
+            }
+        }
+        return saved;
+    }
+
+    private static boolean conflicts(Set<String> earlier, Set<String> later) {
+        if (earlier.isEmpty() || later.isEmpty()) {
+            return false;
+        }
+        if (earlier.contains(ANY_PROPERTY) || later.contains(ANY_PROPERTY)) {
+            return true;
+        }
+        for (String family : later) {
+            if (earlier.contains(family)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> getPropertyFamilies(Node node) {
+        Set<String> families = new HashSet<String>();
+        collectPropertyFamilies(node, families);
+        return families;
+    }
+
+    private static void collectPropertyFamilies(Node node, Set<String> families) {
+        for (Node child : node.getChildren()) {
+            if (child instanceof RuleNode) {
+                families.add(getPropertyFamily(((RuleNode) child)
+                        .getVariable().toString()));
+            } else {
+                collectPropertyFamilies(child, families);
+            }
+        }
+    }
+
+    /**
+     * Returns the family of a property, e.g. "border" for
+     * "-webkit-border-top-left-radius". Properties in different families can
+     * be reordered without affecting each other.
+     */
+    static String getPropertyFamily(String property) {
+        String name = property.trim().toLowerCase();
+        if (name.startsWith("--")) {
+            // custom properties can be used in the value of any property
+            return ANY_PROPERTY;
+        }
+        if (name.startsWith("-") || name.startsWith("*")
+                || name.startsWith("_")) {
+            // vendor prefix or IE hack
+            int prefixEnd = name.startsWith("-") ? name.indexOf('-', 1) : 0;
+            name = prefixEnd < 0 ? name.substring(1) : name
+                    .substring(prefixEnd + 1);
+        }
+        String alias = FAMILY_ALIASES.get(name);
+        if (alias != null) {
+            return alias;
+        }
+        int dash = name.indexOf('-');
+        String family = dash > 0 ? name.substring(0, dash) : name;
+        alias = FAMILY_ALIASES.get(family);
+        return alias != null ? alias : family;
+    }
+
+    private static int getHeaderLength(String query) {
+        // "@media " + query + " {\n" + ... + "}"
+        return OutputSize.length(query) + 11;
+    }
+}
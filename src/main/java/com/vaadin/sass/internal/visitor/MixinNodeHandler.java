@@ -19,6 +19,8 @@ package com.vaadin.sass.internal.visitor;
 import java.util.Collection;
 import java.util.Collections;
 
+import com.vaadin.sass.internal.CompilerEvents;
+import com.vaadin.sass.internal.DefinitionProfiler;
 import com.vaadin.sass.internal.Scope;
 import com.vaadin.sass.internal.ScssContext;
 import com.vaadin.sass.internal.handler.SCSSErrorHandler;
@@ -48,6 +50,30 @@ public class MixinNodeHandler {
 
     private static Collection<Node> replaceMixinNode(ScssContext context,
             MixinNode mixinNode, MixinDefNode mixinDef) {
+        DefinitionProfiler profiler = context.getDefinitionProfiler();
+        Object event = CompilerEvents.get().beginMixin();
+        if (profiler == null && event == null) {
+            return expandMixin(context, mixinNode, mixinDef);
+        }
+        if (profiler != null) {
+            profiler.enter(DefinitionProfiler.Kind.MIXIN, mixinDef.getName());
+        }
+        Collection<Node> result = null;
+        try {
+            result = expandMixin(context, mixinNode, mixinDef);
+            return result;
+        } finally {
+            int nodes = result != null ? DefinitionProfiler.countNodes(result)
+                    : 0;
+            CompilerEvents.get().endMixin(event, mixinDef.getName(), nodes);
+            if (profiler != null) {
+                profiler.exit(nodes);
+            }
+        }
+    }
+
+    private static Collection<Node> expandMixin(ScssContext context,
+            MixinNode mixinNode, MixinDefNode mixinDef) {
         MixinDefNode defClone = mixinDef.copy();
 
         defClone.replaceContentDirective(mixinNode);
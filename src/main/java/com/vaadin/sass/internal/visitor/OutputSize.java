@@ -0,0 +1,100 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.visitor;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+
+import com.vaadin.sass.internal.tree.BlockNode;
+import com.vaadin.sass.internal.tree.MediaNode;
+import com.vaadin.sass.internal.tree.Node;
+
+/**
+ * Removal of nodes from a compiled style sheet with accounting of the number
+ * of bytes (UTF-8) the removal saves in the unminified output, shared by the
+ * output optimizations.
+ * 
+ * @author Vaadin Ltd
+ */
+final class OutputSize {
+
+    // the separator printed between two siblings at the top level (blank
+    // line) and within a block or @media (tab and newline) has the same length
+    static final int SEPARATOR_LENGTH = 2;
+
+    private OutputSize() {
+    }
+
+    /**
+     * Returns the length of printed output in bytes.
+     */
+    static int length(String printed) {
+        try {
+            return printed.getBytes("UTF-8").length;
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Removes a child node from its parent.
+     * 
+     * @return number of bytes the child and its separator took in the output
+     */
+    static long remove(Node parent, Node child) {
+        String printed;
+        if (child instanceof BlockNode) {
+            printed = ((BlockNode) child)
+                    .buildString(parent instanceof MediaNode);
+        } else {
+            printed = child.printState();
+        }
+        parent.replaceNode(child, Collections.<Node> emptyList());
+        return length(printed) + SEPARATOR_LENGTH;
+    }
+
+    /**
+     * Removes a @media block from its parent if no children are left in it.
+     * 
+     * @return number of bytes saved
+     */
+    static long removeIfEmpty(Node parent, MediaNode media) {
+        if (!media.getChildren().isEmpty()) {
+            return 0;
+        }
+        return remove(parent, media);
+    }
+
+    /**
+     * Corrects the number of bytes saved by removing children of a node: if
+     * no children are left at the top level, there was one separator less than
+     * counted by {@link #remove(Node, Node)}. An empty @media block is removed
+     * by its parent, which counts its separator.
+     * 
+     * @param node
+     *            the node the children were removed from
+     * @param saved
+     *            number of bytes counted for the removed children
+     * @return the number of bytes actually saved
+     */
+    static long correctForEmptyParent(Node node, long saved) {
+        if (saved > 0 && !(node instanceof MediaNode)
+                && node.getChildren().isEmpty()) {
+            return saved - SEPARATOR_LENGTH;
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.visitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.vaadin.sass.internal.selector.Selector;
+import com.vaadin.sass.internal.tree.BlockNode;
+import com.vaadin.sass.internal.tree.MediaNode;
+import com.vaadin.sass.internal.tree.Node;
+import com.vaadin.sass.internal.tree.RuleNode;
+
+/**
+ * Output optimization that removes duplication from the rule blocks of a
+ * compiled style sheet:
+ * <ul>
+ * <li>a declaration is dropped if the declaration of the same property that
+ * takes effect in the same block has the same value and importance (other
+ * values are kept as fallbacks for older browsers),</li>
+ * <li>adjacent blocks with identical declarations are merged into one block
+ * with the selectors of both, unless a selector contains a pseudo-class or
+ * pseudo-element that is not in CSS 2.1 or Selectors Level 3 (browsers drop a
+ * whole rule with a selector they do not understand),</li>
+ * <li>blocks and @media blocks that have no output are removed.</li>
+ * </ul>
+ * 
+ * Blocks are only merged with their immediate neighbors, so the order of the
+ * rules in the cascade does not change. This runs after
+ * {@link MediaMergeHandler}, so blocks that the merging of @media blocks has
+ * brought next to each other are merged as well.
+ * 
+ * @author Vaadin Ltd
+ */
+public class RuleMergeHandler {
+
+    // pseudo-classes of CSS 2.1 and Selectors Level 3 that all browsers
+    // understand
+    private static final Set<String> PSEUDO_CLASSES = new HashSet<String>(
+            Arrays.asList("link", "visited", "hover", "active", "focus",
+                    "lang", "first-child", "last-child", "only-child",
+                    "nth-child", "nth-last-child", "first-of-type",
+                    "last-of-type", "only-of-type", "nth-of-type",
+                    "nth-last-of-type", "root", "empty", "target", "enabled",
+                    "disabled", "checked", "not"));
+
+    // pseudo-elements of CSS 2.1, which may also be written with one colon
+    private static final Set<String> PSEUDO_ELEMENTS = new HashSet<String>(
+            Arrays.asList("before", "after", "first-line", "first-letter"));
+
+    /**
+     * Removes overridden declarations, merges adjacent blocks with identical
+     * declarations and removes empty blocks among the children of a node and,
+     * recursively, within @media blocks.
+     * 
+     * @param node
+     *            compiled style sheet or other parent node
+     * @return number of bytes (UTF-8) saved in the unminified output
+     */
+    public static long mergeDuplicates(Node node) {
+        boolean indent = node instanceof MediaNode;
+        long saved = 0;
+        BlockNode previous = null;
+        String previousBody = null;
+        for (Node child : node.getChildren()) {
+            if (child instanceof MediaNode) {
+                saved += mergeDuplicates(child);
+                long removed = OutputSize.removeIfEmpty(node,
+                        (MediaNode) child);
+                if (removed > 0) {
+                    saved += removed;
+                    continue;
+                }
+            }
+            if (!(child instanceof BlockNode)) {
+                previous = null;
+                continue;
+            }
+            BlockNode block = (BlockNode) child;
+            saved += removeOverriddenDeclarations(block, indent);
+            String body = getBody(block);
+            if (body == null) {
+                // no declarations in the output
+                saved += OutputSize.remove(node, block);
+                continue;
+            }
+            if (previous != null && body.equals(previousBody)
+                    && canMerge(previous) && canMerge(block)) {
+                saved -= mergeSelectors(previous, block);
+                saved += OutputSize.remove(node, block);
+            } else {
+                previous = block;
+                previousBody = body;
+            }
+        }
+        return OutputSize.correctForEmptyParent(node, saved);
+    }
+
+    /**
+     * Removes the declarations of a block that are overridden by another
+     * declaration of the same property in the block.
+     * 
+     * @return number of bytes saved
+     */
+    private static long removeOverriddenDeclarations(BlockNode block,
+            boolean indent) {
+        // the declaration that takes effect for each property
+        Map<String, RuleNode> winners = new HashMap<String, RuleNode>();
+        List<RuleNode> rules = new ArrayList<RuleNode>();
+        for (Node child : block.getChildren()) {
+            if (child instanceof RuleNode) {
+                RuleNode rule = (RuleNode) child;
+                rules.add(rule);
+                String property = getProperty(rule);
+                RuleNode winner = winners.get(property);
+                if (winner == null || rule.isImportant()
+                        || !winner.isImportant()) {
+                    winners.put(property, rule);
+                }
+            }
+        }
+        if (winners.size() == rules.size()) {
+            return 0;
+        }
+        long saved = 0;
+        for (RuleNode rule : rules) {
+            RuleNode winner = winners.get(getProperty(rule));
+            if (winner != rule && isOverriddenBy(rule, winner)) {
+                // a declaration is indented one more tab within @media
+                saved += OutputSize.length(rule.printState())
+                        + OutputSize.SEPARATOR_LENGTH + (indent ? 1 : 0);
+                block.replaceNode(rule, Collections.<Node> emptyList());
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Returns true if a declaration can be removed because of the declaration
+     * of the same property that takes effect. Any other value may be a
+     * fallback for browsers that do not support the value that takes effect
+     * (new units, keywords or functions), whichever of them is !important, so
+     * only declarations identical to the one taking effect are removed.
+     */
+    private static boolean isOverriddenBy(RuleNode rule, RuleNode winner) {
+        if (rule.getComment() != null) {
+            // keep comments such as license notes
+            return false;
+        }
+        String value = Node.PRINT_STRATEGY.build(rule.getValue());
+        String winnerValue = Node.PRINT_STRATEGY.build(winner.getValue());
+        return value.equals(winnerValue)
+                && rule.isImportant() == winner.isImportant();
+    }
+
+    private static String getProperty(RuleNode rule) {
+        return rule.getVariable().toString().trim().toLowerCase();
+    }
+
+    /**
+     * Returns the printed declarations of a block or null if the block has no
+     * output.
+     */
+    private static String getBody(BlockNode block) {
+        StringBuilder body = new StringBuilder();
+        boolean empty = true;
+        for (Node child : block.getChildren()) {
+            String printed = Node.PRINT_STRATEGY.build(child);
+            if (empty && printed != null && !"".equals(printed.trim())) {
+                empty = false;
+            }
+            body.append(printed).append('\n');
+        }
+        return empty ? null : body.toString();
+    }
+
+    private static boolean canMerge(BlockNode block) {
+        for (Selector selector : block.getSelectorList()) {
+            if (!isWidelySupported(selector.toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if all pseudo-classes and pseudo-elements of a selector are
+     * understood by all browsers. The argument of :not() must be a simple
+     * selector as in Selectors Level 3.
+     */
+    static boolean isWidelySupported(String selector) {
+        int colon = selector.indexOf(':');
+        while (colon >= 0) {
+            int start = colon + 1;
+            boolean element = start < selector.length()
+                    && selector.charAt(start) == ':';
+            if (element) {
+                start++;
+            }
+            int end = start;
+            while (end < selector.length()
+                    && isNameChar(selector.charAt(end))) {
+                end++;
+            }
+            String name = selector.substring(start, end).toLowerCase();
+            if (!PSEUDO_ELEMENTS.contains(name)
+                    && (element || !PSEUDO_CLASSES.contains(name))) {
+                return false;
+            }
+            if ("not".equals(name)) {
+                int close = selector.indexOf(')', end);
+                String argument = selector.substring(end,
+                        close < 0 ? selector.length() : close);
+                for (char c : " ,>+~".toCharArray()) {
+                    if (argument.indexOf(c) >= 0) {
+                        return false;
+                    }
+                }
+            }
+            colon = selector.indexOf(':', end);
+        }
+        return true;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+    }
+
+    /**
+     * Adds the selectors of a block to the selectors of another block.
+     * 
+     * @return number of bytes added to the output
+     */
+    private static long mergeSelectors(BlockNode target, BlockNode source) {
+        Set<Selector> selectors = new LinkedHashSet<Selector>(
+                target.getSelectorList());
+        long added = 0;
+        for (Selector selector : source.getSelectorList()) {
+            if (selectors.add(selector)) {
+                added += OutputSize.length(", " + selector);
+            }
+        }
+        target.setSelectorList(new ArrayList<Selector>(selectors));
+        return added;
+    }
+
+}
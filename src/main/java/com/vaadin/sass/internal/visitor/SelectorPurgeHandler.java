@@ -0,0 +1,91 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.visitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.sass.internal.selector.Selector;
+import com.vaadin.sass.internal.selector.SelectorWhitelist;
+import com.vaadin.sass.internal.tree.BlockNode;
+import com.vaadin.sass.internal.tree.MediaNode;
+import com.vaadin.sass.internal.tree.Node;
+
+/**
+ * Output optimization that removes the selectors that cannot match any element
+ * of an application, as described by a {@link SelectorWhitelist}. Blocks
+ * without remaining selectors and @media blocks without remaining blocks are
+ * removed.
+ * 
+ * The whitelist is matched against the final selectors, including those added
+ * by @extend. The purge runs before the other output optimizations so that
+ * they only see the blocks that are kept.
+ * 
+ * @author Vaadin Ltd
+ */
+public class SelectorPurgeHandler {
+
+    /**
+     * Removes the unused selectors among the children of a node and,
+     * recursively, within @media blocks.
+     * 
+     * @param node
+     *            compiled style sheet or other parent node
+     * @param whitelist
+     *            the class names, ids and elements in use
+     * @return number of bytes (UTF-8) saved in the unminified output
+     */
+    public static long purge(Node node, SelectorWhitelist whitelist) {
+        long saved = 0;
+        for (Node child : node.getChildren()) {
+            if (child instanceof MediaNode) {
+                saved += purge(child, whitelist);
+                saved += OutputSize.removeIfEmpty(node, (MediaNode) child);
+            } else if (child instanceof BlockNode) {
+                saved += purge(node, (BlockNode) child, whitelist);
+            }
+        }
+        return OutputSize.correctForEmptyParent(node, saved);
+    }
+
+    /**
+     * Removes the unused selectors of a block, or the whole block if none of
+     * its selectors is used.
+     * 
+     * @return number of bytes saved
+     */
+    private static long purge(Node parent, BlockNode block,
+            SelectorWhitelist whitelist) {
+        List<Selector> used = new ArrayList<Selector>();
+        long unusedLength = 0;
+        for (Selector selector : block.getSelectorList()) {
+            if (whitelist.canMatch(selector)) {
+                used.add(selector);
+            } else {
+                // the selector and a comma separator
+                unusedLength += OutputSize.length(selector.toString()) + 2;
+            }
+        }
+        if (used.isEmpty()) {
+            return OutputSize.remove(parent, block);
+        }
+        if (used.size() < block.getSelectorList().size()) {
+            block.setSelectorList(used);
+            return unusedLength;
+        }
+        return 0;
+    }
+}
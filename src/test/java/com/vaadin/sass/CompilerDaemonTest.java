@@ -0,0 +1,197 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompilerDaemonTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CompilerDaemon daemon;
+
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Before
+    public void startDaemon() throws Exception {
+        System.setProperty(CompilerDaemon.TOKEN_DIRECTORY_PROPERTY, folder
+                .newFolder("tokens").getPath());
+        daemon = new CompilerDaemon(0);
+        daemon.start();
+    }
+
+    @After
+    public void stopDaemon() throws Exception {
+        daemon.stop();
+        daemon.join();
+        System.clearProperty(CompilerDaemon.TOKEN_DIRECTORY_PROPERTY);
+    }
+
+    private int compile(String input, String output,
+            Map<String, String> options) throws Exception {
+        out.reset();
+        err.reset();
+        return CompilerDaemon.compile(daemon.getPort(), folder.getRoot(),
+                input, output, options, out, err);
+    }
+
+    private void write(String name, String content) throws Exception {
+        FileUtils.writeStringToFile(new File(folder.getRoot(), name),
+                content, "UTF-8");
+    }
+
+    @Test
+    public void testCompileToOutput() throws Exception {
+        write("styles.scss", "$c: red; .a { color: $c; }");
+        Assert.assertEquals(0, compile("styles.scss", null,
+                new LinkedHashMap<String, String>()));
+        Assert.assertEquals(".a {\n\tcolor: red;\n}", out.toString("UTF-8"));
+        Assert.assertEquals("", err.toString("UTF-8"));
+    }
+
+    @Test
+    public void testCompileToFileWithOptions() throws Exception {
+        write("styles.scss", ".a { color: red; } .b { color: red; }");
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        options.put("minify", "true");
+        options.put("merge-rules", "true");
+        Assert.assertEquals(0, compile("styles.scss", "styles.css", options));
+        Assert.assertEquals(".a,.b{color:red}", FileUtils.readFileToString(
+                new File(folder.getRoot(), "styles.css"), "UTF-8"));
+        Assert.assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testDiagnostics() throws Exception {
+        write("styles.scss", ".a { @include missing; }");
+        Assert.assertEquals(SassCompiler.ERROR_COMPILE_FAILED,
+                compile("styles.scss", null,
+                        new LinkedHashMap<String, String>()));
+        Assert.assertTrue(err.toString("UTF-8").contains(
+                "SEVERE: Mixin Definition: missing not found"));
+
+        Assert.assertEquals(2, compile("missing.scss", null,
+                new LinkedHashMap<String, String>()));
+        Assert.assertTrue(err.toString("UTF-8").contains(
+                "could not be read"));
+    }
+
+    @Test
+    public void testBrokenImportFailsEveryTime() throws Exception {
+        write("styles.scss", "@import \"broken\"; .a { color: red; }");
+        write("_broken.scss", ".b { color: ; } .c { width: 1px; }");
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(SassCompiler.ERROR_COMPILE_FAILED,
+                    compile("styles.scss", null,
+                            new LinkedHashMap<String, String>()));
+            Assert.assertTrue(err.toString("UTF-8").contains(
+                    "Error when parsing file"));
+        }
+    }
+
+    @Test
+    public void testModifiedImportIsReparsed() throws Exception {
+        write("styles.scss", "@import \"colors\"; .a { color: $c; }");
+        write("_colors.scss", "$c: red;");
+        compile("styles.scss", null, new LinkedHashMap<String, String>());
+        Assert.assertEquals(".a {\n\tcolor: red;\n}", out.toString("UTF-8"));
+
+        File colors = new File(folder.getRoot(), "_colors.scss");
+        long lastModified = colors.lastModified();
+        write("_colors.scss", "$c: blue;");
+        colors.setLastModified(lastModified + 2000);
+        compile("styles.scss", null, new LinkedHashMap<String, String>());
+        Assert.assertEquals(".a {\n\tcolor: blue;\n}", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testTokenFile() throws Exception {
+        File tokenFile = CompilerDaemon.getTokenFile(daemon.getPort());
+        Assert.assertEquals(64, FileUtils.readFileToString(tokenFile)
+                .length());
+        daemon.stop();
+        Assert.assertFalse(tokenFile.exists());
+        daemon.start();
+    }
+
+    @Test
+    public void testWrongTokenRejected() throws Exception {
+        write("styles.scss", ".a { color: red; }");
+        File tokenFile = CompilerDaemon.getTokenFile(daemon.getPort());
+        FileUtils.writeStringToFile(tokenFile,
+                FileUtils.readFileToString(tokenFile).replaceAll(".", "0"));
+        Assert.assertEquals(SassCompiler.ERROR_COMPILE_FAILED,
+                compile("styles.scss", "styles.css",
+                        new LinkedHashMap<String, String>()));
+        Assert.assertTrue(err.toString("UTF-8").contains(
+                "Invalid daemon token"));
+        Assert.assertFalse(new File(folder.getRoot(), "styles.css").exists());
+    }
+
+    @Test
+    public void testMissingInputRejected() throws Exception {
+        Assert.assertEquals(SassCompiler.ERROR_COMPILE_FAILED,
+                compile(null, null, new LinkedHashMap<String, String>()));
+        Assert.assertTrue(err.toString("UTF-8").contains("Missing input file"));
+        // the daemon still serves requests
+        write("styles.scss", ".a { color: red; }");
+        Assert.assertEquals(0, compile("styles.scss", null,
+                new LinkedHashMap<String, String>()));
+    }
+
+    @Test
+    public void testOversizedRequestRejected() throws Exception {
+        Socket socket = new Socket(InetAddress.getByName(null),
+                daemon.getPort());
+        try {
+            DataOutputStream request = new DataOutputStream(
+                    socket.getOutputStream());
+            request.writeInt(2);
+            // length of the token
+            request.writeInt(Integer.MAX_VALUE);
+            request.flush();
+
+            DataInputStream response = new DataInputStream(
+                    socket.getInputStream());
+            Assert.assertEquals(SassCompiler.ERROR_COMPILE_FAILED,
+                    response.readInt());
+            Assert.assertEquals(0, response.readInt());
+            byte[] message = new byte[response.readInt()];
+            response.readFully(message);
+            Assert.assertTrue(new String(message, "UTF-8")
+                    .startsWith("Request too large"));
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vaadin.sass.internal.resolver.InMemoryResolver;
+import com.vaadin.sass.internal.resolver.ScssStylesheetResolver;
+import com.vaadin.sass.internal.selector.Selector;
+import com.vaadin.sass.internal.tree.Node;
+
+public class BundleSplitterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScssStylesheet compile() throws Exception {
+        InMemoryResolver resolver = new InMemoryResolver();
+        resolver.addStylesheet("theme/_base.scss",
+                "@import \"colors\"; .base { color: $c; }");
+        resolver.addStylesheet("theme/_colors.scss",
+                "$c: red; .colors { color: $c; }");
+        resolver.addStylesheet("theme/_grid.scss",
+                ".grid { margin: 0; } @media print { .grid { margin: 1px; } }");
+        ScssStylesheet sheet = ScssStylesheet.getFromString(
+                "theme/styles.scss", "@import \"base\"; .main { width: 1px; }"
+                        + "@import \"grid\"; @media print { .main { x: y; } }");
+        sheet.setResolvers(Collections
+                .<ScssStylesheetResolver> singletonList(resolver));
+        sheet.compile();
+        return sheet;
+    }
+
+    private String print(ScssStylesheet sheet, List<Node> nodes) {
+        StringBuilder result = new StringBuilder();
+        for (Node node : nodes) {
+            result.append(node.printState().replaceAll("\\s+", " "))
+                    .append('|');
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testSplitByImport() throws Exception {
+        ScssStylesheet sheet = compile();
+        Map<String, List<Node>> bundles = BundleSplitter.split(sheet,
+                BundleSplitter.byImport());
+        Assert.assertEquals(Arrays.asList("base", "main", "grid"),
+                Arrays.asList(bundles.keySet().toArray()));
+        Assert.assertEquals(".colors { color: red; }|.base { color: red; }|",
+                print(sheet, bundles.get("base")));
+        Assert.assertEquals(
+                ".main { width: 1px; }|@media print { .main { x: y; } }|",
+                print(sheet, bundles.get("main")));
+        Assert.assertEquals(2, bundles.get("grid").size());
+    }
+
+    @Test
+    public void testSplitByMedia() throws Exception {
+        ScssStylesheet sheet = compile();
+        Map<String, List<Node>> bundles = BundleSplitter.split(sheet,
+                BundleSplitter.byMedia());
+        Assert.assertEquals(Arrays.asList("main", "print"),
+                Arrays.asList(bundles.keySet().toArray()));
+        Assert.assertEquals(4, bundles.get("main").size());
+        Assert.assertEquals(2, bundles.get("print").size());
+    }
+
+    @Test
+    public void testSplitBySelector() throws Exception {
+        ScssStylesheet sheet = compile();
+        Map<String, List<Node>> bundles = BundleSplitter.split(sheet,
+                BundleSplitter.bySelector("critical",
+                        new BundleSplitter.SelectorFilter() {
+                            @Override
+                            public boolean accept(Selector selector) {
+                                return selector.toString().equals(".grid");
+                            }
+                        }));
+        Assert.assertEquals(
+                ".grid { margin: 0; }|@media print { .grid { margin: 1px; } }|",
+                print(sheet, bundles.get("critical")));
+        Assert.assertEquals(4, bundles.get("main").size());
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        ScssStylesheet sheet = compile();
+        File dir = folder.newFolder("out");
+        List<BundleSplitter.Bundle> bundles = BundleSplitter.write(sheet,
+                BundleSplitter.byMedia(), new File(dir, "styles.css"), false);
+
+        Assert.assertEquals(2, bundles.size());
+        File print = new File(dir, "styles-print.css");
+        Assert.assertEquals(print, bundles.get(1).getFile());
+        Assert.assertEquals(print.length(), bundles.get(1).getBytes());
+        Assert.assertEquals("@media print {\n\t.grid {\n\t\tmargin: 1px;\n\t}\n}"
+                + "\n\n@media print {\n\t.main {\n\t\tx: y;\n\t}\n}",
+                read(print));
+        Assert.assertTrue(read(new File(dir, "styles.css")).startsWith(
+                ".colors {"));
+        Assert.assertEquals("{\n  \"bundles\": [\n"
+                + "    { \"name\": \"main\", \"file\": \"styles.css\", "
+                + "\"nodes\": 4, \"bytes\": " + bundles.get(0).getBytes()
+                + " },\n"
+                + "    { \"name\": \"print\", \"file\": \"styles-print.css\", "
+                + "\"nodes\": 2, \"bytes\": " + print.length() + " }\n  ]\n}\n",
+                read(new File(dir, "styles.bundles.json")));
+    }
+
+    private String read(File file) throws Exception {
+        return FileUtils.readFileToString(file, "UTF-8");
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.resolver.InMemoryResolver;
+import com.vaadin.sass.internal.resolver.ScssStylesheetResolver;
+
+public class CompilationListenerTest {
+
+    private static class RecordingListener implements CompilationListener {
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void stylesheetResolved(String identifier, String uri,
+                long nanos) {
+            events.add("resolved " + identifier + " " + uri);
+        }
+
+        @Override
+        public void stylesheetParsed(String uri, long bytes, long nanos) {
+            events.add("parsed " + uri + " " + bytes);
+        }
+
+        @Override
+        public void traversalFinished(long nanos) {
+            events.add("traversal");
+        }
+
+        @Override
+        public void extendFinished(long nanos) {
+            events.add("extend");
+        }
+
+        @Override
+        public void serializationFinished(boolean minified, long chars,
+                long nanos) {
+            events.add("serialization " + minified + " " + chars);
+        }
+
+        @Override
+        public void optimizationFinished(String optimization,
+                long bytesSaved, long nanos) {
+            events.add(optimization + " " + bytesSaved);
+        }
+
+        @Override
+        public void compressionFinished(long bytes, long nanos) {
+            events.add("compression");
+        }
+    }
+
+    private ScssStylesheet parse() throws Exception {
+        InMemoryResolver resolver = new InMemoryResolver();
+        resolver.addStylesheet("theme/_colors.scss", "$c: red;");
+        ScssStylesheet sheet = ScssStylesheet.getFromString(
+                "theme/styles.scss", "@import \"colors\"; .a { color: $c; }");
+        sheet.setResolvers(Collections
+                .<ScssStylesheetResolver> singletonList(resolver));
+        return sheet;
+    }
+
+    @Test
+    public void testPhasesReported() throws Exception {
+        ScssStylesheet sheet = parse();
+        RecordingListener listener = new RecordingListener();
+        sheet.setCompilationListener(listener);
+        sheet.compile();
+        sheet.write(new StringWriter());
+
+        Assert.assertEquals("[resolved colors theme/_colors.scss, "
+                + "parsed theme/_colors.scss 8, traversal, extend, "
+                + "serialization false 19]", listener.events.toString());
+    }
+
+    @Test
+    public void testProfilerSummary() throws Exception {
+        ScssStylesheet sheet = parse();
+        CompilationProfiler profiler = new CompilationProfiler();
+        sheet.setCompilationListener(profiler);
+        sheet.compile();
+        sheet.write(new StringWriter(), true);
+
+        Assert.assertTrue(profiler.getTotalNanos("traversal") > 0);
+        Assert.assertEquals(0, profiler.getTotalNanos("compression"));
+        Assert.assertEquals(-1, profiler.getTotalNanos("unknown"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        profiler.printSummary(new PrintStream(out, true, "UTF-8"));
+        String summary = out.toString("UTF-8");
+        Assert.assertTrue(summary, summary.contains("theme/_colors.scss"));
+        Assert.assertTrue(summary, summary.contains("serialization"));
+        Assert.assertFalse(summary, summary.contains("compression"));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DefinitionProfilerTest {
+
+    private static final String SCSS = "@function double($x) { @return 2 * $x; }"
+            + " @mixin box($w) { width: double($w); .inner { color: darken(red, 10%); } }"
+            + " @mixin boxes { @include box(1px); @include box(2px); }"
+            + " .a { @include boxes; }";
+
+    @Test
+    public void testCallStatistics() throws Exception {
+        ScssStylesheet sheet = ScssStylesheet.getFromString("styles.scss",
+                SCSS);
+        ScssContext context = new ScssContext();
+        DefinitionProfiler profiler = new DefinitionProfiler();
+        context.setDefinitionProfiler(profiler);
+        sheet.compile(context);
+
+        Map<String, DefinitionProfiler.Entry> entries = new HashMap<String, DefinitionProfiler.Entry>();
+        for (DefinitionProfiler.Entry entry : profiler.getEntries()) {
+            entries.put(entry.getKind() + ":" + entry.getName(), entry);
+        }
+        Assert.assertEquals(1, entries.get("mixin:boxes").getCalls());
+        Assert.assertEquals(2, entries.get("mixin:box").getCalls());
+        Assert.assertEquals(2, entries.get("function:double").getCalls());
+        Assert.assertEquals(2, entries.get("builtin:darken").getCalls());
+        // each box generates a declaration and a rule with a declaration
+        Assert.assertEquals(6, entries.get("mixin:box").getNodes());
+
+        DefinitionProfiler.Entry boxes = entries.get("mixin:boxes");
+        Assert.assertTrue(boxes.getCumulativeNanos() >= boxes.getSelfNanos());
+        Assert.assertTrue(boxes.getCumulativeNanos() >= entries.get(
+                "mixin:box").getCumulativeNanos());
+    }
+
+    @Test
+    public void testCollapsedStacks() throws Exception {
+        ScssStylesheet sheet = ScssStylesheet.getFromString("styles.scss",
+                SCSS);
+        ScssContext context = new ScssContext();
+        DefinitionProfiler profiler = new DefinitionProfiler();
+        context.setDefinitionProfiler(profiler);
+        sheet.compile(context);
+
+        StringWriter writer = new StringWriter();
+        profiler.writeCollapsedStacks(writer);
+        String stacks = writer.toString();
+        Assert.assertTrue(stacks,
+                stacks.contains("mixin:boxes;mixin:box;function:double "));
+        Assert.assertTrue(stacks,
+                stacks.contains("mixin:boxes;mixin:box;builtin:darken "));
+    }
+
+    @Test
+    public void testRecursiveCallsCountedOnce() {
+        DefinitionProfiler profiler = new DefinitionProfiler();
+        profiler.enter(DefinitionProfiler.Kind.FUNCTION, "f");
+        profiler.enter(DefinitionProfiler.Kind.FUNCTION, "f");
+        profiler.exit(0);
+        profiler.exit(0);
+        DefinitionProfiler.Entry entry = profiler.getEntries().get(0);
+        Assert.assertEquals(2, entry.getCalls());
+        Assert.assertTrue(entry.getCumulativeNanos() >= entry.getSelfNanos());
+    }
+}
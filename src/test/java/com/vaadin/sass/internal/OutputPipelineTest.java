@@ -0,0 +1,148 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutputPipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScssStylesheet compile() throws Exception {
+        StringBuilder scss = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            scss.append(".a" + i + " { color: red; margin: 0px; }\n");
+        }
+        ScssStylesheet sheet = ScssStylesheet.getFromString("styles.scss",
+                scss.toString());
+        sheet.compile();
+        return sheet;
+    }
+
+    private String gunzip(File file) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testWriteExpanded() throws Exception {
+        ScssStylesheet sheet = compile();
+        File file = new File(folder.getRoot(), "styles.css");
+        List<File> files = new OutputPipeline().write(sheet, file);
+        Assert.assertEquals(Arrays.asList(file), files);
+        Assert.assertEquals(sheet.printState(),
+                FileUtils.readFileToString(file, "UTF-8"));
+    }
+
+    @Test
+    public void testWriteAllVariantsInOnePass() throws Exception {
+        ScssStylesheet sheet = compile();
+        File file = new File(folder.getRoot(), "styles.css");
+        OutputPipeline pipeline = new OutputPipeline();
+        pipeline.setMinified(true);
+        pipeline.addGzip();
+        List<File> files = pipeline.write(sheet, file);
+
+        File min = new File(folder.getRoot(), "styles.min.css");
+        Assert.assertEquals(Arrays.asList(file, min,
+                new File(folder.getRoot(), "styles.css.gz"), new File(
+                        folder.getRoot(), "styles.min.css.gz")), files);
+        String expanded = FileUtils.readFileToString(file, "UTF-8");
+        String minified = FileUtils.readFileToString(min, "UTF-8");
+        Assert.assertEquals(sheet.printState(), expanded);
+        Assert.assertTrue(minified.startsWith(".a0{color:red;margin:0}"));
+        Assert.assertEquals(expanded, gunzip(files.get(2)));
+        Assert.assertEquals(minified, gunzip(files.get(3)));
+    }
+
+    @Test
+    public void testWriteMinifiedOnly() throws Exception {
+        ScssStylesheet sheet = compile();
+        File file = new File(folder.getRoot(), "styles.css");
+        OutputPipeline pipeline = new OutputPipeline();
+        pipeline.setExpanded(false);
+        pipeline.setMinified(true);
+        Assert.assertEquals(file, pipeline.getMinifiedFile(file));
+        pipeline.write(sheet, file);
+        Assert.assertFalse(FileUtils.readFileToString(file, "UTF-8")
+                .contains("\n\t"));
+        Assert.assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testCompressionLevel() throws Exception {
+        ScssStylesheet sheet = compile();
+        OutputPipeline pipeline = new OutputPipeline();
+        pipeline.addGzip();
+        pipeline.setBufferSize(16);
+
+        pipeline.setCompressionLevel(0);
+        File stored = pipeline.write(sheet,
+                new File(folder.getRoot(), "stored.css")).get(1);
+        pipeline.setCompressionLevel(9);
+        File best = pipeline.write(sheet,
+                new File(folder.getRoot(), "best.css")).get(1);
+
+        Assert.assertTrue(best.length() < stored.length());
+        Assert.assertEquals(gunzip(stored), gunzip(best));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCompressionLevel() {
+        new OutputPipeline().setCompressionLevel(10);
+    }
+
+    @Test
+    public void testCustomCompressor() throws Exception {
+        ScssStylesheet sheet = compile();
+        OutputPipeline pipeline = new OutputPipeline();
+        pipeline.addCompressor(new OutputPipeline.Compressor() {
+            @Override
+            public String getSuffix() {
+                return ".copy";
+            }
+
+            @Override
+            public OutputStream compress(OutputStream out) {
+                return out;
+            }
+        });
+        List<File> files = pipeline.write(sheet,
+                new File(folder.getRoot(), "styles.css"));
+        Assert.assertEquals("styles.css.copy", files.get(1).getName());
+        Assert.assertEquals(FileUtils.readFileToString(files.get(0)),
+                FileUtils.readFileToString(files.get(1)));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.parser.LexicalUnitImpl;
+import com.vaadin.sass.internal.parser.Variable;
+
+public class ScopeTest {
+
+    private static Variable var(String name, int value) {
+        return new Variable(name, LexicalUnitImpl.createInteger(0, 0, value));
+    }
+
+    private static List<String> visible(Scope scope) {
+        List<String> result = new ArrayList<String>();
+        for (Variable variable : scope.getVariables()) {
+            result.add(variable.getName() + "=" + variable.getExpr().printState());
+        }
+        return result;
+    }
+
+    @Test
+    public void testSetUpdatesOutermostDefinition() {
+        Scope root = new Scope();
+        root.setVariable(var("a", 1));
+        Scope inner = new Scope(new Scope(root));
+        inner.setVariable(var("a", 2));
+        inner.setVariable(var("b", 3));
+        Assert.assertEquals("2", root.getVariable("a").getExpr().printState());
+        Assert.assertNull(root.getVariable("b"));
+        Assert.assertEquals("3", inner.getVariable("b").getExpr().printState());
+    }
+
+    @Test
+    public void testVisibleVariablesMaskOuterDefinitions() {
+        Scope root = new Scope();
+        root.addVariable(var("a", 1));
+        root.addVariable(var("b", 2));
+        Scope middle = new Scope(root);
+        Scope inner = new Scope(middle);
+        inner.addVariable(var("a", 3));
+        inner.addVariable(var("c", 4));
+        Assert.assertEquals("[b=2, a=3, c=4]", visible(inner).toString());
+        Assert.assertEquals("[a=1, b=2]", visible(middle).toString());
+    }
+
+    @Test
+    public void testManyLocalDefinitions() {
+        Scope scope = new Scope(new Scope());
+        for (int i = 0; i < 20; i++) {
+            scope.addVariable(var("v" + i, i));
+        }
+        scope.addVariable(var("v5", 50));
+        Assert.assertEquals("50", scope.getVariable("v5").getExpr()
+                .printState());
+        Assert.assertEquals(20, visible(scope).size());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.resolver.InMemoryResolver;
+import com.vaadin.sass.internal.resolver.ScssStylesheetResolver;
+
+public class ScssContextSnapshotTest {
+
+    private static final String LIB = "$color: red !default;"
+            + " @mixin colored { .a { color: $color; } }"
+            + " @function double($x) { @return 2 * $x; }"
+            + " .base { width: double(1px); }";
+
+    private InMemoryResolver resolver;
+    private ScssContextSnapshot snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        resolver = new InMemoryResolver();
+        resolver.addStylesheet("theme/_lib.scss", LIB);
+        snapshot = ScssContextSnapshot.create(parse("@import \"lib\";"),
+                ScssContext.UrlMode.MIXED);
+    }
+
+    @Test
+    public void testCompileFromSnapshot() throws Exception {
+        ScssStylesheet sheet = parse("@import \"lib\"; $color: blue;"
+                + " @include colored; .b { @extend .base; }");
+        sheet.compile(snapshot);
+        Assert.assertEquals(".base, .b {\n\twidth: 2px;\n}\n\n"
+                + ".a {\n\tcolor: blue;\n}", sheet.printState());
+        Assert.assertTrue(sheet.getSourceUris().contains("theme/_lib.scss"));
+    }
+
+    @Test
+    public void testSnapshotNotModifiedByFork() throws Exception {
+        ScssStylesheet first = parse("@import \"lib\"; $color: blue;"
+                + " @include colored;");
+        first.compile(snapshot);
+        ScssStylesheet second = parse("@import \"lib\"; @include colored;"
+                + " .c { width: double(3px); }");
+        second.compile(snapshot);
+        Assert.assertEquals(".base {\n\twidth: 2px;\n}\n\n"
+                + ".a {\n\tcolor: red;\n}\n\n.c {\n\twidth: 6px;\n}",
+                second.printState());
+    }
+
+    @Test
+    public void testPreludeMismatch() throws Exception {
+        Assert.assertEquals(1,
+                snapshot.getPreludeLength(parse("@import \"lib\"; .a {}")));
+        Assert.assertEquals(-1,
+                snapshot.getPreludeLength(parse("@import \"other\";")));
+    }
+
+    private ScssStylesheet parse(String scss) throws Exception {
+        ScssStylesheet sheet = ScssStylesheet.getFromString(
+                "theme/styles.scss", scss);
+        sheet.setResolvers(Collections
+                .<ScssStylesheetResolver> singletonList(resolver));
+        return sheet;
+    }
+}
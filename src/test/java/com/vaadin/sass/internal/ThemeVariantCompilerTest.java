@@ -0,0 +1,65 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.resolver.InMemoryResolver;
+import com.vaadin.sass.internal.resolver.ScssStylesheetResolver;
+
+public class ThemeVariantCompilerTest {
+
+    @Test
+    public void testCompileVariants() throws Exception {
+        InMemoryResolver resolver = new InMemoryResolver();
+        resolver.addStylesheet("theme/_base.scss",
+                "$color: red !default; $size: 1px !default;"
+                        + " .a { color: $color; width: 2 * $size; }");
+        ScssStylesheet base = ScssStylesheet.getFromString(
+                "theme/styles.scss", "@import \"base\";");
+        base.setResolvers(Collections
+                .<ScssStylesheetResolver> singletonList(resolver));
+
+        ThemeVariantCompiler compiler = new ThemeVariantCompiler(base);
+        List<Map<String, String>> variants = new ArrayList<Map<String, String>>();
+        variants.add(Collections.<String, String> emptyMap());
+        Map<String, String> blue = new HashMap<String, String>();
+        blue.put("color", "blue");
+        variants.add(blue);
+        Map<String, String> large = new HashMap<String, String>();
+        large.put("$size", "5px");
+        variants.add(large);
+
+        List<ScssStylesheet> result = compiler.compile(variants);
+        Assert.assertEquals(".a {\n\tcolor: red;\n\twidth: 2px;\n}", result
+                .get(0).printState());
+        Assert.assertEquals(".a {\n\tcolor: blue;\n\twidth: 2px;\n}", result
+                .get(1).printState());
+        Assert.assertEquals(".a {\n\tcolor: red;\n\twidth: 10px;\n}", result
+                .get(2).printState());
+        Assert.assertEquals(1, compiler.getStylesheetCache().size());
+
+        // the base style sheet is not modified by compiling variants
+        Assert.assertEquals("@import \"base\";", base.printState());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.parser.SassList.Separator;
+
+public class FormalArgumentListTest {
+
+    private static LexicalUnitImpl number(int value) {
+        return LexicalUnitImpl.createInteger(0, 0, value);
+    }
+
+    // formal arguments ($a, $b, $c: 10)
+    private static FormalArgumentList formal(boolean hasVariableArguments) {
+        return new FormalArgumentList(Arrays.asList(new Variable("a", null),
+                new Variable("b", null), new Variable("c", number(10))),
+                hasVariableArguments);
+    }
+
+    private static String values(FormalArgumentList list) {
+        StringBuilder builder = new StringBuilder();
+        for (Variable var : list) {
+            builder.append(var.getName()).append("=")
+                    .append(var.getExpr().printState()).append(";");
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testPositionalArguments() {
+        FormalArgumentList result = formal(false).replaceFormalArguments(
+                new ActualArgumentList(Separator.COMMA, number(1), number(2)),
+                true);
+        Assert.assertEquals("a=1;b=2;c=10;", values(result));
+        Assert.assertEquals(2, result.indexOf("c"));
+        Assert.assertEquals(-1, result.indexOf("d"));
+    }
+
+    @Test
+    public void testNamedArguments() {
+        List<Variable> named = Collections.singletonList(new Variable("a",
+                number(3)));
+        List<SassListItem> unnamed = new ArrayList<SassListItem>();
+        unnamed.add(number(1));
+        FormalArgumentList result = formal(false).replaceFormalArguments(
+                new ActualArgumentList(Separator.COMMA, unnamed, named, null),
+                true);
+        Assert.assertEquals("a=3;b=1;c=10;", values(result));
+    }
+
+    @Test
+    public void testVariableArguments() {
+        FormalArgumentList result = formal(true).replaceFormalArguments(
+                new ActualArgumentList(Separator.COMMA, number(1), number(2),
+                        number(3), number(4)), true);
+        Assert.assertEquals("a=1;b=2;c=3, 4;", values(result));
+        result = formal(true).replaceFormalArguments(
+                new ActualArgumentList(Separator.COMMA, number(1), number(2)),
+                true);
+        Assert.assertEquals(0, ((SassList) result.get(2).getExpr()).size());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testTooManyArguments() {
+        formal(false).replaceFormalArguments(
+                new ActualArgumentList(Separator.COMMA, number(1), number(2),
+                        number(3), number(4)), true);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testMissingArgument() {
+        formal(false).replaceFormalArguments(
+                new ActualArgumentList(Separator.COMMA, number(1)), true);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.parser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.parser.SassList.Separator;
+
+public class SassListItemEqualityTest {
+
+    private static void assertEqualItems(Object a, Object b) {
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(b, a);
+        Assert.assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    public void testUnitlessNumberEqualsDimension() {
+        assertEqualItems(LexicalUnitImpl.createPX(0, 0, 2.5f),
+                LexicalUnitImpl.createNumber(0, 0, 2.5f));
+        assertEqualItems(LexicalUnitImpl.createInteger(0, 0, 0),
+                LexicalUnitImpl.createNumber(0, 0, -0.0f));
+        Assert.assertFalse(LexicalUnitImpl.createPX(0, 0, 1).equals(
+                LexicalUnitImpl.createCM(0, 0, 1)));
+    }
+
+    @Test
+    public void testListEquality() {
+        SassList first = new SassList(Separator.COMMA,
+                LexicalUnitImpl.createPX(0, 0, 1),
+                LexicalUnitImpl.createIdent(0, 0, "a"));
+        SassList second = new SassList(Separator.COMMA,
+                LexicalUnitImpl.createNumber(0, 0, 1),
+                LexicalUnitImpl.createIdent(1, 1, "a"));
+        assertEqualItems(first, second);
+        Assert.assertFalse(first.equals(new SassList(Separator.SPACE, first
+                .getItems().toArray(new SassListItem[0]))));
+        Assert.assertFalse(first.equals(new SassList(Separator.COMMA,
+                LexicalUnitImpl.createPX(0, 0, 1), LexicalUnitImpl
+                        .createIdent(0, 0, "b"))));
+    }
+
+    @Test
+    public void testExpressionEquality() {
+        SassListItem first = SassExpression.createExpression(
+                LexicalUnitImpl.createPX(0, 0, 1),
+                LexicalUnitImpl.createSpace(0, 0),
+                LexicalUnitImpl.createPX(0, 0, 2));
+        SassListItem second = SassExpression.createExpression(
+                LexicalUnitImpl.createPX(1, 0, 1),
+                LexicalUnitImpl.createSpace(1, 0),
+                LexicalUnitImpl.createPX(1, 0, 2));
+        Assert.assertTrue(first instanceof SassExpression);
+        assertEqualItems(first, second);
+    }
+}
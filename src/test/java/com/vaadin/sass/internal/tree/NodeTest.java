@@ -0,0 +1,125 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.tree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.parser.ParseException;
+import com.vaadin.sass.internal.selector.Selector;
+
+public class NodeTest {
+
+    private static BlockNode parent(Node... children) {
+        BlockNode parent = new BlockNode(new ArrayList<Selector>());
+        for (Node child : children) {
+            parent.appendChild(child);
+        }
+        return parent;
+    }
+
+    private static String names(Node parent) {
+        StringBuilder builder = new StringBuilder();
+        for (Node child : parent.getChildren()) {
+            builder.append(((CommentNode) child).getComment());
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testAppendMovesNode() {
+        CommentNode a = new CommentNode("a");
+        CommentNode b = new CommentNode("b");
+        BlockNode first = parent(a, b);
+        BlockNode second = parent();
+        second.appendChild(a);
+        Assert.assertEquals("b", names(first));
+        Assert.assertEquals("a", names(second));
+        Assert.assertSame(second, a.getParentNode());
+
+        first.appendChild(a);
+        first.appendChild(b);
+        Assert.assertEquals("ab", names(first));
+        Assert.assertEquals("", names(second));
+    }
+
+    @Test
+    public void testReplaceNode() {
+        CommentNode a = new CommentNode("a");
+        CommentNode b = new CommentNode("b");
+        CommentNode c = new CommentNode("c");
+        CommentNode x = new CommentNode("x");
+        CommentNode y = new CommentNode("y");
+        BlockNode parent = parent(a, b, c);
+
+        parent.replaceNode(b, Arrays.asList(x, y));
+        Assert.assertEquals("axyc", names(parent));
+        Assert.assertNull(b.getParentNode());
+
+        parent.replaceNode(x, Arrays.asList(b, x, c));
+        Assert.assertEquals("abxcy", names(parent));
+
+        parent.replaceNode(y, Collections.<Node> emptyList());
+        Assert.assertEquals("abxc", names(parent));
+
+        parent.replaceNodeAt(0, y);
+        Assert.assertEquals("ybxc", names(parent));
+        Assert.assertNull(a.getParentNode());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testReplaceNodeOfOtherParent() {
+        CommentNode a = new CommentNode("a");
+        parent(a);
+        parent().replaceNode(a,
+                Collections.singletonList(new CommentNode("b")));
+    }
+
+    @Test
+    public void testChildrenSnapshot() {
+        CommentNode a = new CommentNode("a");
+        CommentNode b = new CommentNode("b");
+        BlockNode parent = parent(a, b);
+        List<Node> children = parent.getChildren();
+        Assert.assertSame(children, parent.getChildren());
+
+        parent.replaceNode(a, Collections.<Node> emptyList());
+        Assert.assertEquals(2, children.size());
+        Assert.assertEquals(1, parent.getChildren().size());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        BlockNode parent = parent(new CommentNode("a"), new CommentNode("b"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(parent);
+        out.close();
+        BlockNode copy = (BlockNode) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        Assert.assertEquals("ab", names(copy));
+        Assert.assertSame(copy, copy.getChildren().get(1).getParentNode());
+    }
+}
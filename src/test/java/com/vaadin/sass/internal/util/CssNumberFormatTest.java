@@ -0,0 +1,70 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.util;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CssNumberFormatTest {
+
+    @Test
+    public void testFormat() {
+        Assert.assertEquals("1.5", CssNumberFormat.format(1.5f));
+        Assert.assertEquals("-2.25", CssNumberFormat.format(-2.25f));
+        Assert.assertEquals("0.1", CssNumberFormat.format(0.1f));
+        Assert.assertEquals("0.00012", CssNumberFormat.format(0.00012f));
+        Assert.assertEquals("123456.78906", CssNumberFormat.format(123456.79f));
+        Assert.assertEquals("1.00001", CssNumberFormat.format(1.0000051f));
+        Assert.assertEquals("3.0", CssNumberFormat.format(3f));
+    }
+
+    @Test
+    public void testRounding() {
+        // the float values are slightly below 0.000015 and 0.000005
+        Assert.assertEquals("0.00001", CssNumberFormat.format(0.000015f));
+        Assert.assertEquals("0.0", CssNumberFormat.format(0.000005f));
+        // exact ties round to even
+        Assert.assertEquals("0.01562", CssNumberFormat.format(0.015625f));
+        Assert.assertEquals("0.04688", CssNumberFormat.format(0.046875f));
+        Assert.assertEquals("-0.0", CssNumberFormat.format(-0.000001f));
+    }
+
+    @Test
+    public void testSameAsDecimalFormat() {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+        symbols.setDecimalSeparator('.');
+        DecimalFormat format = new DecimalFormat("0.0####", symbols);
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            float value;
+            if (i % 2 == 0) {
+                value = Float.intBitsToFloat(random.nextInt());
+            } else {
+                value = (random.nextInt(20000000) - 10000000) / 100000f;
+            }
+            Assert.assertEquals(format.format(value),
+                    CssNumberFormat.format(value));
+        }
+        Assert.assertEquals(format.format(Float.NaN),
+                CssNumberFormat.format(Float.NaN));
+        Assert.assertEquals(format.format(Float.MAX_VALUE),
+                CssNumberFormat.format(Float.MAX_VALUE));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PersistentVectorTest {
+
+    @Test
+    public void testAppendKeepsOriginal() {
+        PersistentVector<String> empty = PersistentVector.empty();
+        PersistentVector<String> a = empty.append("a");
+        PersistentVector<String> ab = a.append("b");
+
+        Assert.assertEquals(0, empty.size());
+        Assert.assertEquals(Arrays.asList("a"), a);
+        Assert.assertEquals(Arrays.asList("a", "b"), ab);
+    }
+
+    @Test
+    public void testAppendToBranch() {
+        PersistentVector<String> a = PersistentVector.<String> empty()
+                .append("a");
+        PersistentVector<String> ab = a.append("b");
+        PersistentVector<String> ac = a.append("c");
+        PersistentVector<String> abd = ab.append("d");
+
+        Assert.assertEquals(Arrays.asList("a"), a);
+        Assert.assertEquals(Arrays.asList("a", "b"), ab);
+        Assert.assertEquals(Arrays.asList("a", "c"), ac);
+        Assert.assertEquals(Arrays.asList("a", "b", "d"), abd);
+    }
+
+    @Test
+    public void testAppendMany() {
+        List<Integer> expected = new ArrayList<Integer>();
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int i = 0; i < 1000; i++) {
+            vector = vector.append(i);
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, vector);
+        Assert.assertEquals(Integer.valueOf(999), vector.get(999));
+    }
+
+    @Test
+    public void testAppendAll() {
+        PersistentVector<String> ab = PersistentVector.of(Arrays.asList("a",
+                "b"));
+        PersistentVector<String> abcd = ab.appendAll(Arrays.asList("c", "d"));
+        PersistentVector<String> abe = ab.append("e");
+
+        Assert.assertEquals(Arrays.asList("a", "b"), ab);
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), abcd);
+        Assert.assertEquals(Arrays.asList("a", "b", "e"), abe);
+        Assert.assertSame(ab, ab.appendAll(new ArrayList<String>()));
+        Assert.assertSame(ab, PersistentVector.of(ab));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetBeyondSize() {
+        PersistentVector<String> a = PersistentVector.<String> empty()
+                .append("a");
+        a.append("b");
+        a.get(1);
+    }
+}
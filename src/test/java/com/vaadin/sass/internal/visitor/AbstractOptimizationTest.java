@@ -0,0 +1,90 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.visitor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.ScssContext;
+import com.vaadin.sass.internal.ScssStylesheet;
+
+/**
+ * Base class for the tests of the output optimizations applied to a compiled
+ * style sheet.
+ */
+public abstract class AbstractOptimizationTest {
+
+    // changed by each optimization
+    private static final String CONTEXT_TEST_SCSS = ".a { color: red; }"
+            + " .b { margin: 0; margin: 0; } .c { margin: 0; }"
+            + " @media print { .b { color: red; } }"
+            + " @media print { .c { color: blue; } }";
+
+    /**
+     * Applies the optimization under test to a compiled style sheet.
+     * 
+     * @return number of bytes saved as reported by the optimization
+     */
+    protected abstract long optimize(ScssStylesheet sheet);
+
+    /**
+     * Enables the optimization under test in a context.
+     */
+    protected abstract void enable(ScssContext context);
+
+    protected ScssStylesheet compile(String scss) throws Exception {
+        ScssStylesheet sheet = ScssStylesheet.getFromString("test.scss", scss);
+        sheet.compile();
+        return sheet;
+    }
+
+    /**
+     * Checks the output of the optimization and that the number of bytes it
+     * reports as saved matches the change in the output.
+     */
+    protected void assertOptimized(String scss, String expected)
+            throws Exception {
+        ScssStylesheet sheet = compile(scss);
+        String before = sheet.printState();
+        long saved = optimize(sheet);
+        String after = sheet.printState();
+        Assert.assertEquals(expected, after);
+        Assert.assertEquals(before.getBytes("UTF-8").length
+                - after.getBytes("UTF-8").length, saved);
+    }
+
+    protected void assertUnchanged(String scss) throws Exception {
+        ScssStylesheet sheet = compile(scss);
+        String before = sheet.printState();
+        Assert.assertEquals(0, optimize(sheet));
+        Assert.assertEquals(before, sheet.printState());
+    }
+
+    @Test
+    public void testEnabledInContext() throws Exception {
+        ScssStylesheet sheet = compile(CONTEXT_TEST_SCSS);
+        String unoptimized = sheet.printState();
+        optimize(sheet);
+        String expected = sheet.printState();
+        Assert.assertFalse(unoptimized.equals(expected));
+
+        sheet = ScssStylesheet.getFromString("test.scss", CONTEXT_TEST_SCSS);
+        ScssContext context = new ScssContext();
+        enable(context);
+        sheet.compile(context);
+        Assert.assertEquals(expected, sheet.printState());
+    }
+}
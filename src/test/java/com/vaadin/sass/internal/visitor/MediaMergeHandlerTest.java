@@ -0,0 +1,128 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.visitor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.ScssContext;
+import com.vaadin.sass.internal.ScssStylesheet;
+
+public class MediaMergeHandlerTest extends AbstractOptimizationTest {
+
+    @Override
+    protected long optimize(ScssStylesheet sheet) {
+        return MediaMergeHandler.mergeMediaBlocks(sheet);
+    }
+
+    @Override
+    protected void enable(ScssContext context) {
+        context.setMergeMediaBlocks(true);
+    }
+
+    @Test
+    public void testMergeConsecutive() throws Exception {
+        assertOptimized("@media print { .a { color: red; } }"
+                + "@media print { .b { color: blue; } }",
+                "@media print {\n\t.a {\n\t\tcolor: red;\n\t}\n"
+                        + "\t.b {\n\t\tcolor: blue;\n\t}\n}");
+    }
+
+    @Test
+    public void testMergeFromMixins() throws Exception {
+        assertOptimized(
+                "@mixin small { @media (max-width: 100px) { @content; } }"
+                        + "@include small { .a { width: 1px; } }"
+                        + "@include small { .b { height: 1px; } }"
+                        + "@include small { .c { margin: 0; } }",
+                "@media (max-width: 100px) {\n\t.a {\n\t\twidth: 1px;\n\t}\n"
+                        + "\t.b {\n\t\theight: 1px;\n\t}\n"
+                        + "\t.c {\n\t\tmargin: 0;\n\t}\n}");
+    }
+
+    @Test
+    public void testMergeOverUnrelatedRules() throws Exception {
+        assertOptimized("@media print { .a { color: red; } }"
+                + ".b { margin: 0; }"
+                + "@media print { .c { padding: 0; } }",
+                "@media print {\n\t.a {\n\t\tcolor: red;\n\t}\n"
+                        + "\t.c {\n\t\tpadding: 0;\n\t}\n}\n\n"
+                        + ".b {\n\tmargin: 0;\n}");
+    }
+
+    @Test
+    public void testNoMergeOverRelatedRules() throws Exception {
+        assertUnchanged("@media print { .a { color: red; } }"
+                + ".b { margin: 0; }"
+                + "@media print { .b { margin-top: 1px; } }");
+    }
+
+    @Test
+    public void testDifferentQueriesNotMerged() throws Exception {
+        assertUnchanged("@media print { .a { color: red; } }"
+                + "@media screen { .b { color: blue; } }");
+    }
+
+    @Test
+    public void testPropertyFamily() {
+        Assert.assertEquals("border",
+                MediaMergeHandler
+                        .getPropertyFamily("-webkit-border-top-left-radius"));
+        Assert.assertEquals("font",
+                MediaMergeHandler.getPropertyFamily("line-height"));
+        Assert.assertEquals("zoom", MediaMergeHandler.getPropertyFamily("*zoom"));
+        Assert.assertEquals("*", MediaMergeHandler.getPropertyFamily("--main"));
+        Assert.assertEquals(
+                MediaMergeHandler.getPropertyFamily("overflow-wrap"),
+                MediaMergeHandler.getPropertyFamily("word-wrap"));
+        Assert.assertEquals("word",
+                MediaMergeHandler.getPropertyFamily("word-spacing"));
+        for (String position : new String[] { "before", "after", "inside" }) {
+            Assert.assertEquals(
+                    MediaMergeHandler.getPropertyFamily("break-" + position),
+                    MediaMergeHandler.getPropertyFamily("page-break-"
+                            + position));
+        }
+    }
+
+    @Test
+    public void testNoMergeOverAliasedProperties() throws Exception {
+        assertUnchanged("@media print { .a { word-wrap: break-word; } }"
+                + ".b { overflow-wrap: normal; }"
+                + "@media print { .b { word-wrap: break-word; } }");
+        assertUnchanged("@media print { .a { color: red; } }"
+                + ".b { break-after: page; }"
+                + "@media print { .b { page-break-after: avoid; } }");
+    }
+
+    @Test
+    public void testNoMergeOverLogicalProperties() throws Exception {
+        assertUnchanged("@media (max-width: 10px) { .x { height: 10px; } }"
+                + ".x { block-size: 20px; }"
+                + "@media (max-width: 10px) { .x { height: 30px; } }");
+        String[][] pairs = { { "block-size", "height" },
+                { "inline-size", "width" }, { "min-inline-size", "min-width" },
+                { "max-block-size", "max-height" },
+                { "inset-inline-start", "left" },
+                { "margin-block-end", "margin-bottom" },
+                { "padding-inline", "padding-left" },
+                { "border-block-start-width", "border-top-width" } };
+        for (String[] pair : pairs) {
+            Assert.assertEquals(MediaMergeHandler.getPropertyFamily(pair[0]),
+                    MediaMergeHandler.getPropertyFamily(pair[1]));
+        }
+    }
+}
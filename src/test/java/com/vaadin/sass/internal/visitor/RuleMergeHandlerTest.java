@@ -0,0 +1,141 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.visitor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.ScssContext;
+import com.vaadin.sass.internal.ScssStylesheet;
+
+public class RuleMergeHandlerTest extends AbstractOptimizationTest {
+
+    @Override
+    protected long optimize(ScssStylesheet sheet) {
+        return RuleMergeHandler.mergeDuplicates(sheet);
+    }
+
+    @Override
+    protected void enable(ScssContext context) {
+        context.setMergeDuplicateRules(true);
+    }
+
+    @Test
+    public void testDuplicateDeclarationRemoved() throws Exception {
+        assertOptimized(".a { color: red; width: 1px; color: red; }",
+                ".a {\n\twidth: 1px;\n\tcolor: red;\n}");
+    }
+
+    @Test
+    public void testFallbackForImportantDeclarationKept() throws Exception {
+        assertOptimized(
+                ".a { height: 100vh; width: 1px; height: 100dvh !important; }",
+                ".a {\n\theight: 100vh;\n\twidth: 1px;\n"
+                        + "\theight: 100dvh !important;\n}");
+    }
+
+    @Test
+    public void testImportantDeclarationKept() throws Exception {
+        assertOptimized(".a { color: red !important; color: blue; }",
+                ".a {\n\tcolor: red !important;\n\tcolor: blue;\n}");
+        assertOptimized(".a { color: red !important; color: blue !important; }",
+                ".a {\n\tcolor: red !important;\n"
+                        + "\tcolor: blue !important;\n}");
+        assertOptimized(".a { color: red !important; color: red !important; }",
+                ".a {\n\tcolor: red !important;\n}");
+    }
+
+    @Test
+    public void testFallbacksKept() throws Exception {
+        String css = ".a {\n\tcolor: #000;\n\tcolor: rgba(0, 0, 0, 0.5);\n"
+                + "\tdisplay: -webkit-box;\n\tdisplay: flex;\n}";
+        assertOptimized(".a { color: #000; color: rgba(0, 0, 0, 0.5);"
+                + " display: -webkit-box; display: flex; }", css);
+        css = ".a {\n\tfont-size: 12px;\n\tfont-size: 0.75rem;\n"
+                + "\theight: 100vh;\n\theight: 100dvh;\n"
+                + "\tposition: relative;\n\tposition: sticky;\n}";
+        assertOptimized(".a{font-size:12px;font-size:.75rem;height:100vh;"
+                + "height:100dvh;position:relative;position:sticky}", css);
+        assertOptimized(".a { color: red; color: blue; }",
+                ".a {\n\tcolor: red;\n\tcolor: blue;\n}");
+    }
+
+    @Test
+    public void testExactDuplicateWithFunctionRemoved() throws Exception {
+        assertOptimized(".a { color: rgba(0, 0, 0, 0.5); margin: 0;"
+                + " color: rgba(0, 0, 0, 0.5); }",
+                ".a {\n\tmargin: 0;\n\tcolor: rgba(0, 0, 0, 0.5);\n}");
+    }
+
+    @Test
+    public void testAdjacentIdenticalBlocksMerged() throws Exception {
+        assertOptimized(
+                "@mixin m { color: red; } .a { @include m; } .b { @include m; }"
+                        + " .c { color: blue; } .d { color: red; }",
+                ".a, .b {\n\tcolor: red;\n}\n\n.c {\n\tcolor: blue;\n}\n\n"
+                        + ".d {\n\tcolor: red;\n}");
+    }
+
+    @Test
+    public void testBlocksInMediaMerged() throws Exception {
+        assertOptimized("@media print { .a { margin: 1px; margin: 1px; }"
+                + " .b { margin: 1px; } }",
+                "@media print {\n\t.a, .b {\n\t\tmargin: 1px;\n\t}\n}");
+    }
+
+    @Test
+    public void testVendorPseudoSelectorNotMerged() throws Exception {
+        String css = "::-moz-selection {\n\tcolor: red;\n}\n\n"
+                + "::selection {\n\tcolor: red;\n}";
+        assertOptimized("::-moz-selection { color: red; }"
+                + " ::selection { color: red; }", css);
+    }
+
+    @Test
+    public void testNewPseudoSelectorNotMerged() throws Exception {
+        String[] selectors = { ".a:focus-visible", ".a::placeholder",
+                "p:is(a)", "p:where(a)", "p:has(img)", ".a:not(.c .d)" };
+        for (String selector : selectors) {
+            assertOptimized(selector + " { color: red; } .b { color: red; }",
+                    selector + " {\n\tcolor: red;\n}\n\n"
+                            + ".b {\n\tcolor: red;\n}");
+        }
+    }
+
+    @Test
+    public void testWidelySupportedPseudoSelectorMerged() throws Exception {
+        assertOptimized(".a:hover { color: red; }"
+                + " .b:first-child { color: red; }"
+                + " .c::before { color: red; } .d:after { color: red; }"
+                + " .e:not(.f) { color: red; }"
+                + " li:nth-child(2n+1) { color: red; }",
+                ".a:hover, .b:first-child, .c::before, .d:after, .e:not(.f), "
+                        + "li:nth-child(2n+1) {\n\tcolor: red;\n}");
+    }
+
+    @Test
+    public void testIsWidelySupported() {
+        Assert.assertTrue(RuleMergeHandler.isWidelySupported("a[href]:focus"));
+        Assert.assertTrue(RuleMergeHandler.isWidelySupported("p:lang(en)"));
+        Assert.assertFalse(RuleMergeHandler
+                .isWidelySupported("input:-ms-input-placeholder"));
+        Assert.assertFalse(RuleMergeHandler.isWidelySupported("::selection"));
+        Assert.assertFalse(RuleMergeHandler.isWidelySupported(":before:hover"
+                + ":focus-within"));
+        Assert.assertFalse(RuleMergeHandler
+                .isWidelySupported(".a:not(:focus-visible)"));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal.visitor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vaadin.sass.internal.ScssContext;
+import com.vaadin.sass.internal.ScssStylesheet;
+import com.vaadin.sass.internal.selector.SelectorWhitelist;
+
+public class SelectorPurgeHandlerTest extends AbstractOptimizationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SelectorWhitelist whitelist = whitelist(".b", ".c");
+
+    @Override
+    protected long optimize(ScssStylesheet sheet) {
+        return SelectorPurgeHandler.purge(sheet, whitelist);
+    }
+
+    @Override
+    protected void enable(ScssContext context) {
+        context.setSelectorWhitelist(whitelist);
+    }
+
+    private void assertPurged(String scss, SelectorWhitelist whitelist,
+            String expected) throws Exception {
+        this.whitelist = whitelist;
+        assertOptimized(scss, expected);
+    }
+
+    private SelectorWhitelist whitelist(String... entries) {
+        SelectorWhitelist whitelist = new SelectorWhitelist();
+        for (String entry : entries) {
+            whitelist.add(entry);
+        }
+        return whitelist;
+    }
+
+    @Test
+    public void testUnusedSelectorsRemoved() throws Exception {
+        assertPurged(".a, .b .c, #d { color: red; } .e { color: blue; }"
+                + " .a:hover, .a::before, .a[title] { margin: 0; }",
+                whitelist(".a", "#d", ".c"), ".a, #d {\n\tcolor: red;\n}\n\n"
+                        + ".a:hover, .a::before, .a[title] {\n\tmargin: 0;\n}");
+    }
+
+    @Test
+    public void testEmptyMediaRemoved() throws Exception {
+        assertPurged("@media print { .b { color: red; } } .a { color: blue; }"
+                + " @media screen { .a, .b { color: red; } }",
+                whitelist(".a"), ".a {\n\tcolor: blue;\n}\n\n"
+                        + "@media screen {\n\t.a {\n\t\tcolor: red;\n\t}\n}");
+    }
+
+    @Test
+    public void testElementsOnlyCheckedWhenListed() throws Exception {
+        assertPurged("div { color: red; } span.a { color: blue; }",
+                whitelist(".a"), "div {\n\tcolor: red;\n}\n\n"
+                        + "span.a {\n\tcolor: blue;\n}");
+        assertPurged("div { color: red; } span.a { color: blue; } * { margin: 0; }",
+                whitelist(".a", "SPAN"),
+                "span.a {\n\tcolor: blue;\n}\n\n* {\n\tmargin: 0;\n}");
+    }
+
+    @Test
+    public void testPrefix() throws Exception {
+        assertPurged(".v-button { color: red; } .x-button { color: blue; }",
+                whitelist(".v-*"), ".v-button {\n\tcolor: red;\n}");
+    }
+
+    @Test
+    public void testAllRemoved() throws Exception {
+        assertPurged(".a { color: red; } .b { color: blue; }", whitelist(),
+                "");
+    }
+
+    @Test
+    public void testScanDirectory() throws Exception {
+        File dir = folder.newFolder("app");
+        File nested = new File(dir, "src");
+        nested.mkdir();
+        write(new File(dir, "index.html"), "<div class=\"main-layout\">");
+        write(new File(nested, "MyUI.java"), "button.addStyleName(\"friendly\");");
+        write(new File(nested, "notes.txt"), "ignored");
+
+        SelectorWhitelist whitelist = SelectorWhitelist.scan(dir);
+        assertPurged(".main-layout .friendly { color: red; }"
+                + " .ignored { color: blue; }", whitelist,
+                ".main-layout .friendly {\n\tcolor: red;\n}");
+    }
+
+    @Test
+    public void testReadFile() throws Exception {
+        File file = folder.newFile("whitelist.txt");
+        write(file, "// used names\n.a\n#b\n\n");
+        SelectorWhitelist whitelist = SelectorWhitelist.read(file);
+        assertPurged(".a { color: red; } #b { color: blue; } .c { margin: 0; }",
+                whitelist, ".a {\n\tcolor: red;\n}\n\n#b {\n\tcolor: blue;\n}");
+    }
+
+    private void write(File file, String content) throws Exception {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                "UTF-8");
+        writer.write(content);
+        writer.close();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.sass.resolvers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.internal.ScssStylesheet;
+import com.vaadin.sass.internal.resolver.InMemoryResolver;
+import com.vaadin.sass.internal.resolver.ScssStylesheetResolver;
+
+public class InMemoryResolverTest {
+
+    @Test
+    public void testCompileFromString() throws Exception {
+        ScssStylesheet sheet = ScssStylesheet.getFromString(
+                "virtual/styles.scss", "$c: red; .a { color: $c; }");
+        sheet.compile();
+        Assert.assertEquals(".a {\n\tcolor: red;\n}", sheet.printState());
+        Assert.assertEquals("virtual/styles.scss", sheet.getSourceUris()
+                .get(0));
+    }
+
+    @Test
+    public void testCompileFromByteBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap("xx.a { color: blue; }"
+                .getBytes("UTF-8"));
+        buffer.position(2);
+        ScssStylesheet sheet = ScssStylesheet.getFromByteBuffer("styles.scss",
+                buffer);
+        sheet.compile();
+        Assert.assertEquals(".a {\n\tcolor: blue;\n}", sheet.printState());
+    }
+
+    @Test
+    public void testImportVirtualPartial() throws Exception {
+        InMemoryResolver resolver = new InMemoryResolver();
+        resolver.addStylesheet("tenant/_variables.scss", "$c: green;");
+        resolver.addStylesheet("tenant/theme/base", ".b { color: $c; }");
+
+        ScssStylesheet sheet = ScssStylesheet.getFromString(
+                "tenant/styles.scss",
+                "@import \"variables\"; @import \"theme/base\";");
+        List<ScssStylesheetResolver> resolvers = new ArrayList<ScssStylesheetResolver>();
+        resolvers.add(resolver);
+        sheet.setResolvers(resolvers);
+        sheet.compile();
+        Assert.assertEquals(".b {\n\tcolor: green;\n}", sheet.printState());
+        Assert.assertTrue(sheet.getSourceUris().contains(
+                "tenant/_variables.scss"));
+    }
+
+    @Test
+    public void testUnknownStylesheetNotResolved() {
+        InMemoryResolver resolver = new InMemoryResolver();
+        resolver.addStylesheet("a.scss", "");
+        Assert.assertNull(resolver.resolve(null, "b"));
+        Assert.assertNotNull(resolver.resolve(null, "a.scss"));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2014 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.sass.resolvers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.css.sac.InputSource;
+
+import com.vaadin.sass.internal.resolver.IndexedResolver;
+
+public class IndexedResolverTest {
+
+    @Test
+    public void testResolveFromJar() throws Exception {
+        File jar = createJar();
+        try {
+            IndexedResolver resolver = new IndexedResolver(true, jar);
+            Assert.assertEquals(2, resolver.getIndexSize());
+
+            InputSource source = resolver.resolve(null,
+                    "VAADIN/themes/test/styles.scss");
+            Assert.assertEquals("VAADIN/themes/test/styles.scss",
+                    source.getURI());
+            Assert.assertEquals("@import \"vars\";",
+                    IOUtils.toString(source.getByteStream(), "UTF-8"));
+
+            // partial
+            source = resolver.resolve(null, "VAADIN/themes/test/vars");
+            Assert.assertEquals("VAADIN/themes/test/_vars.scss",
+                    source.getURI());
+
+            Assert.assertNull(resolver.resolve(null, "VAADIN/themes/other"));
+        } finally {
+            jar.delete();
+        }
+    }
+
+    @Test
+    public void testEntryRemovedAfterIndexing() throws Exception {
+        File jar = createJar();
+        try {
+            IndexedResolver resolver = new IndexedResolver(jar);
+            Assert.assertEquals(2, resolver.getIndexSize());
+
+            JarOutputStream out = new JarOutputStream(new FileOutputStream(
+                    jar));
+            out.putNextEntry(new ZipEntry("VAADIN/themes/test/_vars.scss"));
+            out.closeEntry();
+            out.close();
+
+            Assert.assertNull(resolver.resolve(null,
+                    "VAADIN/themes/test/styles.scss"));
+            Assert.assertNotNull(resolver.resolve(null,
+                    "VAADIN/themes/test/vars"));
+        } finally {
+            jar.delete();
+        }
+    }
+
+    @Test
+    public void testResolveFromDirectory() throws Exception {
+        File root = new File(getClass().getResource("/scss").toURI())
+                .getParentFile();
+        IndexedResolver resolver = new IndexedResolver(root);
+        Assert.assertNotNull(resolver.resolve(null, "scss/imports"));
+        Assert.assertNull(resolver.resolve(null, "scss/does-not-exist"));
+    }
+
+    private File createJar() throws IOException {
+        File jar = File.createTempFile("theme", ".jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry("VAADIN/themes/test/styles.scss"));
+            out.write("@import \"vars\";".getBytes("UTF-8"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("VAADIN/themes/test/_vars.scss"));
+            out.write("$a: 1;".getBytes("UTF-8"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("VAADIN/themes/test/image.png"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+}